@@ -0,0 +1,84 @@
+package Benchmarks;
+
+import AbstractSyntaxTree.*;
+import Core.Algorithms;
+import org.apache.commons.math3.util.Pair;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlgorithmsBenchmark {
+    @Param({"4", "16", "64", "256", "1000"})
+    public int size;
+
+    @Param({"0.1", "1.0"})
+    public double density;
+
+    @Param({"FRACTION", "DOUBLE"})
+    public ScalarKind kind;
+
+    private Matrix m;
+    private Matrix singular;
+    private VectorList columns;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        m = Matrices.random(size, size, density, kind, 1);
+        // one column short of square, so the null space is not trivial
+        singular = Matrices.random(size - 1, size, density, kind, 2);
+        columns = Matrices.columns(m);
+    }
+
+    // every call would otherwise be answered by the shared result cache after the first; turning it off once keeps
+    // per-call setup out of the measurement
+    @Setup(Level.Trial)
+    public void disableResults() {
+        Algorithms.resultCache().setEnabled(false);
+    }
+
+    @TearDown(Level.Trial)
+    public void enableResults() {
+        Algorithms.resultCache().setEnabled(true);
+    }
+
+    @Benchmark
+    public RowReductionResult ef() {
+        return Algorithms.ef(m);
+    }
+
+    @Benchmark
+    public RowReductionResult rref() {
+        return Algorithms.rref(m);
+    }
+
+    @Benchmark
+    public Matrix inverse() {
+        return Algorithms.inverse(m).getFirst();
+    }
+
+    @Benchmark
+    public VectorList nullSpace() {
+        return Algorithms.nullSpace(singular).getFirst();
+    }
+
+    @Benchmark
+    public VectorList gramSchmidt() {
+        return Algorithms.gramSchmidt(columns);
+    }
+
+    @Benchmark
+    public Pair<Matrix, Matrix> QRFactorize() {
+        return Algorithms.QRFactorize(m);
+    }
+
+    @Benchmark
+    public Matrix QRAlgorithm() {
+        return Algorithms.QRAlgorithm(m);
+    }
+}
@@ -0,0 +1,67 @@
+package Benchmarks;
+
+import AbstractSyntaxTree.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+final class Matrices {
+    private Matrices() {}
+
+    // off-diagonal entries are small rationals, present with probability density; a square matrix gets a
+    // dominant diagonal so that it is always invertible and its columns always form a basis
+    static Matrix random(int rows, int cols, double density, ScalarKind kind, long seed) {
+        Random random = new Random(seed);
+        List<Scalar> values = new ArrayList<>(rows * cols);
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                int numerator = 0;
+                int denominator = 1;
+                if (row == col && rows == cols) {
+                    numerator = 10 * cols;
+                } else if (random.nextDouble() < density) {
+                    numerator = random.nextInt(19) - 9;
+                    denominator = 1 + random.nextInt(3);
+                }
+                values.add(switch (kind) {
+                    case FRACTION -> new FractionScalar(numerator, denominator);
+                    case DOUBLE -> new DoubleScalar((double) numerator / denominator);
+                });
+            }
+        }
+        return new Matrix(values, cols, rows);
+    }
+
+    static VectorList columns(Matrix m) {
+        List<Vector> vectors = new ArrayList<>(m.rowSize());
+        for (int col = 0; col < m.rowSize(); col++) {
+            vectors.add(m.getColumnVector(col));
+        }
+        return new VectorList(vectors);
+    }
+
+    // a random rows x cols literal as typed into the REPL, e.g. `A <- [1 0 -3 | 0 5 2]` or `A <- [1.5 0 -3.0 | ...]`
+    static String literal(int rows, int cols, double density, ScalarKind kind, long seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder("A <- [");
+        for (int row = 0; row < rows; row++) {
+            if (row > 0) {
+                sb.append(" |");
+            }
+            for (int col = 0; col < cols; col++) {
+                sb.append(' ');
+                if (random.nextDouble() >= density) {
+                    sb.append('0');
+                    continue;
+                }
+                int value = random.nextInt(199) - 99;
+                sb.append(value);
+                if (kind == ScalarKind.DOUBLE) {
+                    sb.append('.').append(random.nextInt(100));
+                }
+            }
+        }
+        return sb.append(" ]").toString();
+    }
+}
@@ -0,0 +1,37 @@
+package Benchmarks;
+
+import AbstractSyntaxTree.Matrix;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatrixBenchmark {
+    @Param({"4", "16", "64", "256", "1000"})
+    public int size;
+
+    @Param({"0.1", "1.0"})
+    public double density;
+
+    @Param({"FRACTION", "DOUBLE"})
+    public ScalarKind kind;
+
+    private Matrix a;
+    private Matrix b;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        a = Matrices.random(size, size, density, kind, 1);
+        b = Matrices.random(size, size, density, kind, 2);
+    }
+
+    @Benchmark
+    public Matrix multiply() {
+        return a.multiply(b);
+    }
+}
@@ -0,0 +1,37 @@
+package Benchmarks;
+
+import AbstractSyntaxTree.ExpressionBlock;
+import Parser.LinearParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+    @Param({"4", "16", "64", "256", "1000"})
+    public int size;
+
+    @Param({"0.1", "1.0"})
+    public double density;
+
+    @Param({"FRACTION", "DOUBLE"})
+    public ScalarKind kind;
+
+    private String source;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        source = Matrices.literal(size, size, density, kind, 1);
+    }
+
+    // builds the parser and parses one line, exactly as the REPL does
+    @Benchmark
+    public ExpressionBlock parse() {
+        return LinearParser.parser().parse(source);
+    }
+}
@@ -0,0 +1,6 @@
+package Benchmarks;
+
+public enum ScalarKind {
+    FRACTION,
+    DOUBLE
+}
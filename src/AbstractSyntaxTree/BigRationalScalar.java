@@ -0,0 +1,345 @@
+package AbstractSyntaxTree;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+
+// An exact rational held in two longs while it fits, promoted to BigInteger only when a long operation overflows.
+// The long path never takes a gcd, so values are reduced lazily: when they leave the long path, and when they are
+// compared, hashed or printed.
+public final class BigRationalScalar implements Scalar {
+    // the denominator is always positive; bigNum and bigDen are null while the value is num / den
+    private final long num, den;
+    private final BigInteger bigNum, bigDen;
+
+    private BigRationalScalar(long num, long den, BigInteger bigNum, BigInteger bigDen) {
+        this.num = num;
+        this.den = den;
+        this.bigNum = bigNum;
+        this.bigDen = bigDen;
+    }
+
+    private BigRationalScalar(BigRationalScalar other) {
+        this(other.num, other.den, other.bigNum, other.bigDen);
+    }
+
+    public BigRationalScalar(long num) {
+        this(num, 1, null, null);
+    }
+
+    public BigRationalScalar(long num, long den) {
+        this(normalize(BigInteger.valueOf(num), BigInteger.valueOf(den)));
+    }
+
+    public BigRationalScalar(BigInteger num, BigInteger den) {
+        this(normalize(num, den));
+    }
+
+    public BigRationalScalar(Scalar other) {
+        this(exact(other));
+    }
+
+    private static BigRationalScalar exact(Scalar other) {
+        return switch (other) {
+            case BigRationalScalar b -> b;
+            case FractionScalar f -> new BigRationalScalar(f.getNumerator(), f.getDenominator(), null, null);
+            case DoubleScalar d -> {
+                // every finite double is a dyadic rational, so the conversion is exact
+                BigDecimal value = new BigDecimal(d.value);
+                yield value.scale() > 0
+                        ? normalize(value.unscaledValue(), BigInteger.TEN.pow(value.scale()))
+                        : normalize(value.toBigIntegerExact(), BigInteger.ONE);
+            }
+        };
+    }
+
+    // lowest terms with a positive denominator, demoted to longs when both parts fit
+    private static BigRationalScalar normalize(BigInteger num, BigInteger den) {
+        if (den.signum() == 0) {
+            throw new ArithmeticException("Division by zero.");
+        }
+        BigInteger gcd = num.gcd(den);
+        if (den.signum() < 0) {
+            gcd = gcd.negate();
+        }
+        num = num.divide(gcd);
+        den = den.divide(gcd);
+        if (num.bitLength() < Long.SIZE && den.bitLength() < Long.SIZE) {
+            return new BigRationalScalar(num.longValue(), den.longValue(), null, null);
+        }
+        return new BigRationalScalar(0, 1, num, den);
+    }
+
+    // num / den as a FractionScalar when it fits in one, otherwise as a BigRationalScalar
+    public static Scalar valueOf(BigInteger num, BigInteger den) {
+        BigRationalScalar value = normalize(num, den);
+        if (!value.isBig() && value.num >= Integer.MIN_VALUE && value.num <= Integer.MAX_VALUE
+                && value.den <= Integer.MAX_VALUE) {
+            return new FractionScalar((int) value.num, (int) value.den);
+        }
+        return value;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return Math.abs(a);
+    }
+
+    boolean isBig() {
+        return bigNum != null;
+    }
+
+    // the unreduced parts, for ScalarAccumulator; only meaningful while the value is not big
+    long longNumerator() {
+        return num;
+    }
+
+    long longDenominator() {
+        return den;
+    }
+
+    BigInteger bigNumerator() {
+        return isBig() ? bigNum : BigInteger.valueOf(num);
+    }
+
+    BigInteger bigDenominator() {
+        return isBig() ? bigDen : BigInteger.valueOf(den);
+    }
+
+    private BigRationalScalar reduced() {
+        if (isBig()) {
+            return this;
+        }
+        long gcd = gcd(num, den);
+        return gcd == 1 ? this : new BigRationalScalar(num / gcd, den / gcd, null, null);
+    }
+
+    public BigInteger getNumerator() {
+        return reduced().bigNumerator();
+    }
+
+    public BigInteger getDenominator() {
+        return reduced().bigDenominator();
+    }
+
+    public double doubleValue() {
+        if (!isBig()) {
+            return (double) num / den;
+        }
+        return new BigDecimal(bigNum).divide(new BigDecimal(bigDen), MathContext.DECIMAL64).doubleValue();
+    }
+
+    private BigRationalScalar plus(BigRationalScalar other) {
+        if (!isBig() && !other.isBig()) {
+            try {
+                if (den == other.den) {
+                    return new BigRationalScalar(Math.addExact(num, other.num), den, null, null);
+                }
+                return new BigRationalScalar(
+                        Math.addExact(Math.multiplyExact(num, other.den), Math.multiplyExact(other.num, den)),
+                        Math.multiplyExact(den, other.den),
+                        null,
+                        null
+                );
+            } catch (ArithmeticException ignored) {
+                // fall through to the BigInteger path
+            }
+        }
+        return normalize(
+                bigNumerator().multiply(other.bigDenominator()).add(other.bigNumerator().multiply(bigDenominator())),
+                bigDenominator().multiply(other.bigDenominator())
+        );
+    }
+
+    private BigRationalScalar times(BigRationalScalar other) {
+        if (!isBig() && !other.isBig()) {
+            try {
+                return new BigRationalScalar(
+                        Math.multiplyExact(num, other.num),
+                        Math.multiplyExact(den, other.den),
+                        null,
+                        null
+                );
+            } catch (ArithmeticException ignored) {
+                // fall through to the BigInteger path
+            }
+        }
+        return normalize(
+                bigNumerator().multiply(other.bigNumerator()),
+                bigDenominator().multiply(other.bigDenominator())
+        );
+    }
+
+    @Override
+    public Scalar add(Scalar other) {
+        switch (other) {
+            case BigRationalScalar b -> {
+                return plus(b);
+            }
+            case FractionScalar f -> {
+                return plus(exact(f));
+            }
+            case DoubleScalar d -> {
+                return new DoubleScalar(doubleValue() + d.value);
+            }
+        }
+    }
+
+    @Override
+    public Scalar subtract(Scalar other) {
+        switch (other) {
+            case BigRationalScalar b -> {
+                return plus(b.negate());
+            }
+            case FractionScalar f -> {
+                return plus(exact(f).negate());
+            }
+            case DoubleScalar d -> {
+                return new DoubleScalar(doubleValue() - d.value);
+            }
+        }
+    }
+
+    @Override
+    public Scalar multiply(Scalar other) {
+        switch (other) {
+            case BigRationalScalar b -> {
+                return times(b);
+            }
+            case FractionScalar f -> {
+                return times(exact(f));
+            }
+            case DoubleScalar d -> {
+                return new DoubleScalar(doubleValue() * d.value);
+            }
+        }
+    }
+
+    @Override
+    public Scalar divide(Scalar other) {
+        switch (other) {
+            case BigRationalScalar b -> {
+                return times(b.reciprocal());
+            }
+            case FractionScalar f -> {
+                return times(exact(f).reciprocal());
+            }
+            case DoubleScalar d -> {
+                return new DoubleScalar(doubleValue() / d.value);
+            }
+        }
+    }
+
+    @Override
+    public BigRationalScalar reciprocal() {
+        if (isBig() || num == Long.MIN_VALUE) {
+            return normalize(bigDenominator(), bigNumerator());
+        }
+        if (num == 0) {
+            throw new ArithmeticException("Division by zero.");
+        }
+        return num < 0
+                ? new BigRationalScalar(-den, -num, null, null)
+                : new BigRationalScalar(den, num, null, null);
+    }
+
+    @Override
+    public Scalar sqrt() {
+        BigInteger n = getNumerator();
+        BigInteger d = getDenominator();
+        if (n.signum() >= 0) {
+            BigInteger rootN = n.sqrt();
+            BigInteger rootD = d.sqrt();
+            if (rootN.multiply(rootN).equals(n) && rootD.multiply(rootD).equals(d)) {
+                return normalize(rootN, rootD);
+            }
+        }
+        return exact(new DoubleScalar(Math.sqrt(doubleValue())));
+    }
+
+    @Override
+    public BigRationalScalar negate() {
+        if (isBig() || num == Long.MIN_VALUE) {
+            return normalize(bigNumerator().negate(), bigDenominator());
+        }
+        return new BigRationalScalar(-num, den, null, null);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        BigRationalScalar b = switch (other) {
+            case BigRationalScalar r -> r;
+            case FractionScalar f -> exact(f);
+            case null, default -> null;
+        };
+        if (b == null) {
+            return false;
+        }
+        if (!isBig() && !b.isBig() && num == b.num && den == b.den) {
+            return true;
+        }
+        // a/b == c/d exactly when a*d == c*b, whether or not either side is reduced
+        return bigNumerator().multiply(b.bigDenominator()).equals(b.bigNumerator().multiply(bigDenominator()));
+    }
+
+    @Override
+    public boolean equals(Object other, double epsilon) {
+        return equals(other);
+    }
+
+    // matches Fraction.hashCode for values that fit in a FractionScalar, so equal values hash equally
+    @Override
+    public int hashCode() {
+        BigInteger n = getNumerator();
+        BigInteger d = getDenominator();
+        if (n.bitLength() < Integer.SIZE && d.bitLength() < Integer.SIZE) {
+            return 37 * (37 * 17 + n.intValue()) + d.intValue();
+        }
+        return 31 * n.hashCode() + d.hashCode();
+    }
+
+    @Override
+    public boolean equals(int other) {
+        if (isBig()) {
+            return bigNum.equals(bigDen.multiply(BigInteger.valueOf(other)));
+        }
+        try {
+            // other == n/d; other*d == n
+            return Math.multiplyExact(den, other) == num;
+        } catch (ArithmeticException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean equals(int other, double epsilon) {
+        return equals(other);
+    }
+
+    @Override
+    public Matrix multiply(Matrix other) {
+        return other.multiply(this);
+    }
+
+    @Override
+    public String toString() {
+        BigRationalScalar r = reduced();
+        if (r.bigDenominator().equals(BigInteger.ONE)) {
+            return r.bigNumerator().toString();
+        }
+        return r.bigNumerator() + " / " + r.bigDenominator();
+    }
+
+    @Override
+    public String print() {
+        BigRationalScalar r = reduced();
+        if (r.bigDenominator().equals(BigInteger.ONE)) {
+            return r.bigNumerator().toString();
+        }
+        return r.bigNumerator() + "/" + r.bigDenominator();
+    }
+}
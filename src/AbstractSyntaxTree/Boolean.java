@@ -8,6 +8,10 @@ public final class Boolean implements Value {
         this.value = value;
     }
 
+    public boolean getValue() {
+        return value;
+    }
+
     @Override
     public String print() {
         return value ? "YES" : "NO";
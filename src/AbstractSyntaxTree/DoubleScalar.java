@@ -1,7 +1,5 @@
 package AbstractSyntaxTree;
 
-import org.apache.commons.math3.fraction.Fraction;
-
 public final class DoubleScalar implements Scalar {
 
     public double value;
@@ -18,6 +16,7 @@ public final class DoubleScalar implements Scalar {
         switch (other) {
             case FractionScalar f -> this.value = f.frac.doubleValue();
             case DoubleScalar d -> this.value = d.value;
+            case BigRationalScalar b -> this.value = b.doubleValue();
         }
     }
 
@@ -25,11 +24,14 @@ public final class DoubleScalar implements Scalar {
     public Scalar add(Scalar other) {
         switch (other) {
             case FractionScalar f -> {
-                return new FractionScalar(new Fraction(value).add(f.frac));
+                return new DoubleScalar(value + f.frac.doubleValue());
             }
             case DoubleScalar d -> {
                 return new DoubleScalar(d.value + value);
             }
+            case BigRationalScalar b -> {
+                return new DoubleScalar(value + b.doubleValue());
+            }
         }
     }
 
@@ -37,11 +39,14 @@ public final class DoubleScalar implements Scalar {
     public Scalar subtract(Scalar other) {
         switch (other) {
             case FractionScalar f -> {
-                return new FractionScalar((new Fraction(value)).subtract(f.frac));
+                return new DoubleScalar(value - f.frac.doubleValue());
             }
             case DoubleScalar d -> {
                 return new DoubleScalar(value - d.value);
             }
+            case BigRationalScalar b -> {
+                return new DoubleScalar(value - b.doubleValue());
+            }
         }
     }
 
@@ -49,11 +54,14 @@ public final class DoubleScalar implements Scalar {
     public Scalar multiply(Scalar other) {
         switch (other) {
             case FractionScalar f -> {
-                return new FractionScalar((new Fraction(value)).multiply(f.frac));
+                return new DoubleScalar(value * f.frac.doubleValue());
             }
             case DoubleScalar d -> {
                 return new DoubleScalar(value * d.value);
             }
+            case BigRationalScalar b -> {
+                return new DoubleScalar(value * b.doubleValue());
+            }
         }
     }
 
@@ -61,11 +69,14 @@ public final class DoubleScalar implements Scalar {
     public Scalar divide(Scalar other) {
         switch (other) {
             case FractionScalar f -> {
-                return new FractionScalar((new Fraction(value)).divide(f.frac));
+                return new DoubleScalar(value / f.frac.doubleValue());
             }
             case DoubleScalar d -> {
                 return new DoubleScalar(value / d.value);
             }
+            case BigRationalScalar b -> {
+                return new DoubleScalar(value / b.doubleValue());
+            }
         }
     }
 
@@ -115,11 +126,7 @@ public final class DoubleScalar implements Scalar {
 
     @Override
     public Matrix multiply(Matrix other) {
-        Matrix ret = new Matrix(other);
-        for (int i = 0; i < ret.col_size*ret.row_size; i++) {
-            ret.values.set(i, other.values.get(i).multiply(this));
-        }
-        return ret;
+        return other.multiply(this);
     }
 
     @Override
@@ -20,20 +20,40 @@ public final class FractionScalar implements Scalar {
         switch (other) {
             case FractionScalar f -> this.frac = f.frac;
             case DoubleScalar d -> this.frac = new Fraction(d.value);
+            case BigRationalScalar b -> this.frac = new Fraction(
+                    b.getNumerator().intValueExact(),
+                    b.getDenominator().intValueExact()
+            );
         }
     }
     public FractionScalar(Fraction frac) {
         this.frac = frac;
     }
 
+    public int getNumerator() {
+        return frac.getNumerator();
+    }
+
+    public int getDenominator() {
+        return frac.getDenominator();
+    }
+
     @Override
     public Scalar add(Scalar other) {
         switch (other) {
             case FractionScalar f -> {
-                return new FractionScalar(f.frac.add(frac));
+                try {
+                    return new FractionScalar(f.frac.add(frac));
+                } catch (ArithmeticException e) {
+                    // the int fraction overflowed; redo the operation exactly
+                    return new BigRationalScalar(this).add(f);
+                }
             }
             case DoubleScalar d -> {
-                return new FractionScalar(new Fraction(d.value).add(frac));
+                return new DoubleScalar(frac.doubleValue() + d.value);
+            }
+            case BigRationalScalar b -> {
+                return new BigRationalScalar(this).add(b);
             }
         }
     }
@@ -42,10 +62,17 @@ public final class FractionScalar implements Scalar {
     public Scalar subtract(Scalar other) {
         switch (other) {
             case FractionScalar f -> {
-                return new FractionScalar(frac.subtract(f.frac));
+                try {
+                    return new FractionScalar(frac.subtract(f.frac));
+                } catch (ArithmeticException e) {
+                    return new BigRationalScalar(this).subtract(f);
+                }
             }
             case DoubleScalar d -> {
-                return new FractionScalar(frac.subtract(new Fraction(d.value)));
+                return new DoubleScalar(frac.doubleValue() - d.value);
+            }
+            case BigRationalScalar b -> {
+                return new BigRationalScalar(this).subtract(b);
             }
         }
     }
@@ -54,10 +81,17 @@ public final class FractionScalar implements Scalar {
     public Scalar multiply(Scalar other) {
         switch (other) {
             case FractionScalar f -> {
-                return new FractionScalar(frac.multiply(f.frac));
+                try {
+                    return new FractionScalar(frac.multiply(f.frac));
+                } catch (ArithmeticException e) {
+                    return new BigRationalScalar(this).multiply(f);
+                }
             }
             case DoubleScalar d -> {
-                return new FractionScalar(frac.multiply(new Fraction(d.value)));
+                return new DoubleScalar(frac.doubleValue() * d.value);
+            }
+            case BigRationalScalar b -> {
+                return new BigRationalScalar(this).multiply(b);
             }
         }
     }
@@ -66,10 +100,17 @@ public final class FractionScalar implements Scalar {
     public Scalar divide(Scalar other) {
         switch (other) {
             case FractionScalar f -> {
-                return new FractionScalar(frac.divide(f.frac));
+                try {
+                    return new FractionScalar(frac.divide(f.frac));
+                } catch (ArithmeticException e) {
+                    return new BigRationalScalar(this).divide(f);
+                }
             }
             case DoubleScalar d -> {
-                return new FractionScalar(frac.divide(new Fraction(d.value)));
+                return new DoubleScalar(frac.doubleValue() / d.value);
+            }
+            case BigRationalScalar b -> {
+                return new BigRationalScalar(this).divide(b);
             }
         }
     }
@@ -92,15 +133,15 @@ public final class FractionScalar implements Scalar {
         if (other instanceof FractionScalar) {
             return ((FractionScalar)other).frac.equals(frac);
         }
+        if (other instanceof BigRationalScalar) {
+            return other.equals(this);
+        }
         return false;
     }
 
     @Override
     public boolean equals(Object other, double epsilon) {
-        if (other instanceof FractionScalar) {
-            return ((FractionScalar)other).frac.equals(frac);
-        }
-        return false;
+        return equals(other);
     }
 
     @Override
@@ -122,11 +163,7 @@ public final class FractionScalar implements Scalar {
 
     @Override
     public Matrix multiply(Matrix other) {
-        Matrix ret = new Matrix(other);
-        for (int i = 0; i < ret.col_size*ret.row_size; i++) {
-            ret.values.set(i, other.values.get(i).multiply(this));
-        }
-        return ret;
+        return other.multiply(this);
     }
 
     @Override
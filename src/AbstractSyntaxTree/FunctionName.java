@@ -25,5 +25,14 @@ public enum FunctionName {
     IS_INDEPENDENT,
     EIGENSPACE,
     IS_EIGENVALUE,
-    IS_EIGENVECTOR
+    IS_EIGENVECTOR,
+    SOLVE,
+    EIGENVALUES,
+    SAVE,
+    LOAD,
+    LOAD_CSV,
+    SNAPSHOT,
+    RESTORE,
+    SPARSE,
+    BANDED
 }
@@ -1,69 +1,545 @@
 package AbstractSyntaxTree;
 
+import Utilities.MatrixMultiplication;
+import Utilities.SparseArithmetic;
 import org.apache.commons.math3.util.Pair;
 
 import java.util.*;
+import java.util.function.UnaryOperator;
 
 public sealed class
 
 Matrix implements Value permits Vector {
+    // a matrix never changes once built, so storage is shared freely between matrices; MatrixBuilder is the
+    // mutable working copy the algorithms write to
     final List<Scalar> values;
-    int row_size;
-    int col_size;
+    // dense row-major storage for non-fraction matrices; values is then a view over it. A matrix made by a row
+    // operation shares rows with the one it came from instead, and assembles this only once something needs it
+    private volatile double[] doubles;
+    final int row_size;
+    final int col_size;
+    // triangular and permutation structure by exact zeros, found by one scan the first time anything asks and
+    // carried over by the operations that keep it; null until then
+    private volatile Structure structure;
 
     public Matrix(List<Scalar> values, int row_size, int col_size) {
-        this.values = values;
+        if (containsDouble(values)) {
+            this.doubles = new double[values.size()];
+            for (int i = 0; i < this.doubles.length; i++) {
+                this.doubles[i] = doubleValue(values.get(i));
+            }
+            this.values = new DoubleValues(this.doubles);
+        } else {
+            this.doubles = null;
+            this.values = values;
+        }
         this.row_size = row_size;
         this.col_size = col_size;
     }
-    public Matrix(Matrix other) {
-        this.values = new ArrayList<>(other.col_size * other.row_size);
-        for (int i = 0; i < other.row_size * other.col_size; i++) {
-            this.values.add(other.values.get(i));
+    public Matrix(double[] values, int row_size, int col_size) {
+        if (values.length != row_size * col_size) {
+            throw new IllegalArgumentException(String.format(
+                    "Cannot build a %dx%d matrix from %d values.", col_size, row_size, values.length
+            ));
         }
+        this.doubles = values;
+        this.values = new DoubleValues(values);
+        this.row_size = row_size;
+        this.col_size = col_size;
+    }
+    public Matrix(Matrix other) {
+        this.structure = other.structure;
+        this.doubles = other.doubles;
+        this.values = other.values;
         this.row_size = other.row_size;
         this.col_size = other.col_size;
     }
+    private Matrix(DoubleView view) {
+        this.doubles = null;
+        this.values = view;
+        this.row_size = view.width;
+        this.col_size = view.height;
+    }
+    private Matrix(ScalarView view) {
+        this.doubles = null;
+        this.values = view;
+        this.row_size = view.width;
+        this.col_size = view.height;
+    }
+    // compressed sparse rows: row r holds entries[rowStarts[r]] up to entries[rowStarts[r + 1]], in the columns
+    // listed alongside them in increasing order, and every other entry is zero
+    public Matrix(int[] rowStarts, int[] columns, double[] entries, int row_size, int col_size) {
+        if (row_size < 0 || col_size < 0 || rowStarts.length != col_size + 1 || rowStarts[0] != 0
+                || rowStarts[col_size] != columns.length || columns.length != entries.length) {
+            throw new IllegalArgumentException(String.format(
+                    "Cannot build a %dx%d sparse matrix from %d row starts and %d entries.",
+                    col_size, row_size, rowStarts.length, entries.length
+            ));
+        }
+        for (int row = 0; row < col_size; row++) {
+            for (int k = rowStarts[row]; k < rowStarts[row + 1]; k++) {
+                if (columns[k] < 0 || columns[k] >= row_size || (k > rowStarts[row] && columns[k] <= columns[k - 1])) {
+                    throw new IllegalArgumentException(String.format(
+                            "Columns of row %d of a sparse matrix must be increasing and below %d.", row, row_size
+                    ));
+                }
+            }
+        }
+        this.doubles = null;
+        this.values = new SparseRows(rowStarts, columns, entries, row_size, col_size);
+        this.row_size = row_size;
+        this.col_size = col_size;
+    }
+    // the exact identity, kept as its size alone
     public Matrix(int dim) {
-        boolean isFraction = isFractionMatrix();
-        this.row_size = dim;
-        this.col_size = dim;
-        this.values = new ArrayList<>();
-        for (int i = 0; i < dim*dim; i++) {
-            if (isFraction) {
-                this.values.add(new FractionScalar(0));
-            } else {
-                this.values.add(new DoubleScalar(0));
+        this(new ScalarDiagonal(dim, null, new FractionScalar(1)));
+        this.structure = Structure.ofDiagonal(dim, true);
+    }
+
+    public static Matrix identity(int dim) {
+        return new Matrix(dim);
+    }
+
+    // value * I, held as the one value
+    public static Matrix scaledIdentity(int dim, Scalar value) {
+        final Matrix ret = value instanceof DoubleScalar d
+                ? new Matrix(new DoubleDiagonal(dim, null, d.value))
+                : new Matrix(new ScalarDiagonal(dim, null, value));
+        return ret.withStructure(Structure.ofDiagonal(dim, isOne(value)));
+    }
+
+    // the square matrix with these entries down its diagonal, held as just those
+    public static Matrix diagonal(List<Scalar> entries) {
+        boolean ones = true;
+        for (Scalar entry : entries) {
+            ones &= isOne(entry);
+        }
+        if (!containsDouble(entries)) {
+            return new Matrix(new ScalarDiagonal(entries.size(), List.copyOf(entries), null))
+                    .withStructure(Structure.ofDiagonal(entries.size(), ones));
+        }
+        double[] diagonal = new double[entries.size()];
+        for (int i = 0; i < diagonal.length; i++) {
+            diagonal[i] = doubleValue(entries.get(i));
+        }
+        return new Matrix(new DoubleDiagonal(diagonal.length, diagonal, 0))
+                .withStructure(Structure.ofDiagonal(diagonal.length, ones));
+    }
+
+    // an n x n matrix that is zero more than lower below or upper above its diagonal, kept as that band alone: row r
+    // holds columns r - lower up to r + upper from band[r * (lower + upper + 1)], and positions off the matrix are
+    // ignored
+    public static Matrix banded(double[] band, int lower, int upper, int n) {
+        if (n < 0 || lower < 0 || upper < 0 || band.length != (long) n * (lower + upper + 1)) {
+            throw new IllegalArgumentException(String.format(
+                    "Cannot build a %dx%d band matrix with bandwidths %d and %d from %d values.",
+                    n, n, lower, upper, band.length
+            ));
+        }
+        return new Matrix(new BandRows(band, lower, upper, n));
+    }
+
+    // exactly one, where DoubleScalar.equals allows an epsilon
+    private static boolean isOne(Scalar s) {
+        return s instanceof DoubleScalar d ? d.value == 1 : s.equals(1);
+    }
+
+    // whether this matrix is held as its diagonal alone, and entry i of that diagonal
+    public boolean isImplicitDiagonal() {
+        return values instanceof DoubleDiagonal || values instanceof ScalarDiagonal;
+    }
+
+    public Scalar diagonalEntry(int i) {
+        return values instanceof DoubleDiagonal d ? new DoubleScalar(d.entry(i)) : ((ScalarDiagonal) values).entry(i);
+    }
+
+    // f applied down an implicit diagonal, once for the whole of a scaled identity
+    private Matrix mapDiagonal(UnaryOperator<Scalar> f) {
+        if (values instanceof DoubleDiagonal d && d.diagonal == null) {
+            return scaledIdentity(row_size, f.apply(new DoubleScalar(d.value)));
+        }
+        if (values instanceof ScalarDiagonal d && d.diagonal == null) {
+            return scaledIdentity(row_size, f.apply(d.value));
+        }
+        List<Scalar> entries = new ArrayList<>(row_size);
+        for (int i = 0; i < row_size; i++) {
+            entries.add(f.apply(diagonalEntry(i)));
+        }
+        return diagonal(entries);
+    }
+
+    // this + sign * d for an implicit diagonal d: a copy of this matrix with only its diagonal changed
+    private Matrix plusDiagonal(Matrix d, int sign) {
+        if (isImplicitDiagonal()) {
+            List<Scalar> entries = new ArrayList<>(row_size);
+            for (int i = 0; i < row_size; i++) {
+                entries.add(sign > 0
+                        ? diagonalEntry(i).add(d.diagonalEntry(i))
+                        : diagonalEntry(i).subtract(d.diagonalEntry(i)));
             }
+            return diagonal(entries);
         }
-        for (int i = 0; i < dim; i++) {
-            if (isFraction) {
-                this.values.set(i*dim+i, new FractionScalar(1));
-            } else {
-                this.values.set(i*dim+i, new DoubleScalar(1));
+        if (isSparseMatrix()) {
+            return SparseArithmetic.add(this, d.toSparseMatrix(), sign);
+        }
+        if (values instanceof BandRows b) {
+            return b.plus(d.toBandMatrix().band(), sign);
+        }
+        if (isDoubleMatrix() || d.isDoubleMatrix()) {
+            double[] ret = isDoubleMatrix() ? denseCopy() : asDoubles();
+            for (int i = 0; i < row_size; i++) {
+                ret[i * row_size + i] += sign * d.doubleAt(i, i);
             }
+            return new Matrix(ret, row_size, col_size);
         }
+        List<Scalar> ret = new ArrayList<>(values);
+        for (int i = 0; i < row_size; i++) {
+            final int k = i * row_size + i;
+            ret.set(k, sign > 0 ? ret.get(k).add(d.diagonalEntry(i)) : ret.get(k).subtract(d.diagonalEntry(i)));
+        }
+        return new Matrix(ret, row_size, col_size);
     }
 
+    // the vectors as columns, read from the vectors themselves
     public Matrix(VectorList vs) {
-        this.row_size = vs.size();
-        this.col_size = vs.getVectorDimension();
-        this.values = new ArrayList<>(row_size * col_size);
+        this(beside(columns(vs), vs.getVectorDimension()));
+    }
+
+    private static List<Matrix> columns(VectorList vs) {
+        List<Matrix> columns = new ArrayList<>(vs.size());
+        for (int i = 0; i < vs.size(); i++) {
+            columns.add(vs.getVector(i));
+        }
+        return columns;
+    }
+
+    private static Matrix beside(List<Matrix> matrices, int height) {
+        List<Matrix> parts = new ArrayList<>(matrices.size());
+        boolean anyDouble = false;
+        for (Matrix m : matrices) {
+            // nested augmentations are flattened so that reads never go through more than one of them
+            if (m.values instanceof DoubleBeside b) {
+                parts.addAll(Arrays.asList(b.parts));
+            } else if (m.values instanceof ScalarBeside b) {
+                parts.addAll(Arrays.asList(b.parts));
+            } else if (m.row_size > 0) {
+                parts.add(m);
+            }
+            anyDouble |= m.isDoubleMatrix();
+        }
+        int[] starts = new int[parts.size()];
+        int width = 0;
+        for (int p = 0; p < starts.length; p++) {
+            starts[p] = width;
+            width += parts.get(p).row_size;
+        }
+        Matrix[] array = parts.toArray(new Matrix[0]);
+        return anyDouble
+                ? new Matrix(new DoubleBeside(array, starts, width, height))
+                : new Matrix(new ScalarBeside(array, starts, width, height));
+    }
+
+    private static boolean containsDouble(List<Scalar> values) {
+        for (Scalar s : values) {
+            if (s instanceof DoubleScalar) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static double doubleValue(Scalar s) {
+        return switch (s) {
+            case DoubleScalar d -> d.value;
+            case FractionScalar f -> f.frac.doubleValue();
+            case BigRationalScalar b -> b.doubleValue();
+        };
+    }
+
+    // the entries as a dense row-major array, shared with this matrix when it is already double-backed
+    private double[] asDoubles() {
+        if (isDoubleMatrix()) {
+            return doubleValues();
+        }
+        double[] ret = new double[row_size * col_size];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = doubleValue(values.get(i));
+        }
+        return ret;
+    }
+
+    public boolean isDoubleMatrix() {
+        return doubles != null || values instanceof DoubleView;
+    }
+
+    // backing row-major array of a double matrix, shared with every matrix built on it, so it must not be written
+    public double[] doubleValues() {
+        double[] ret = doubles;
+        if (ret == null) {
+            if (!(values instanceof DoubleView view)) {
+                throw new IllegalStateException("Matrix is not backed by doubles.");
+            }
+            ret = view.assemble();
+            doubles = ret;
+        }
+        return ret;
+    }
+
+    // a sparse, band or diagonal matrix with more entries than this prints as a summary rather than every zero
+    private static final long PRINTED_SPARSE_ENTRIES = 10_000;
+
+    public boolean isSparseMatrix() {
+        return values instanceof SparseRows;
+    }
+
+    public boolean isBandMatrix() {
+        return values instanceof BandRows;
+    }
+
+    // how many entries the storage behind this matrix holds, which for a sparse, band or diagonal matrix is far
+    // fewer than it has
+    public long storedEntries() {
+        if (values instanceof SparseRows s) {
+            return s.entries.length;
+        }
+        if (values instanceof BandRows b) {
+            return b.band.length;
+        }
+        return isImplicitDiagonal() ? row_size : (long) row_size * col_size;
+    }
+
+    // the same entries in compressed sparse rows, dropping the zeros
+    public Matrix toSparseMatrix() {
+        if (isSparseMatrix()) {
+            return new Matrix(this);
+        }
+        if (values instanceof BandRows b) {
+            int[] rowStarts = new int[col_size + 1];
+            int[] columns = new int[b.band.length];
+            double[] entries = new double[b.band.length];
+            int count = 0;
+            for (int row = 0; row < col_size; row++) {
+                for (int col = b.first(row); col < b.end(row); col++) {
+                    final double entry = b.band[b.index(row, col)];
+                    if (entry != 0) {
+                        columns[count] = col;
+                        entries[count++] = entry;
+                    }
+                }
+                rowStarts[row + 1] = count;
+            }
+            return new Matrix(rowStarts, Arrays.copyOf(columns, count), Arrays.copyOf(entries, count), row_size, col_size);
+        }
+        if (isImplicitDiagonal()) {
+            int[] rowStarts = new int[col_size + 1];
+            int[] columns = new int[col_size];
+            double[] entries = new double[col_size];
+            int count = 0;
+            for (int i = 0; i < col_size; i++) {
+                final double entry = doubleAt(i, i);
+                if (entry != 0) {
+                    columns[count] = i;
+                    entries[count++] = entry;
+                }
+                rowStarts[i + 1] = count;
+            }
+            return new Matrix(rowStarts, Arrays.copyOf(columns, count), Arrays.copyOf(entries, count), row_size, col_size);
+        }
+        int[] rowStarts = new int[col_size + 1];
+        int[] columns = new int[16];
+        double[] entries = new double[16];
+        double[] row = new double[row_size];
+        int count = 0;
+        for (int r = 0; r < col_size; r++) {
+            copyRow(r, row, 0);
+            for (int col = 0; col < row_size; col++) {
+                if (row[col] != 0) {
+                    if (count == columns.length) {
+                        columns = Arrays.copyOf(columns, 2 * count);
+                        entries = Arrays.copyOf(entries, 2 * count);
+                    }
+                    columns[count] = col;
+                    entries[count] = row[col];
+                    count++;
+                }
+            }
+            rowStarts[r + 1] = count;
+        }
+        return new Matrix(rowStarts, Arrays.copyOf(columns, count), Arrays.copyOf(entries, count), row_size, col_size);
+    }
+
+    // the same entries in band storage, as narrow as the non-zero entries allow
+    public Matrix toBandMatrix() {
+        if (row_size != col_size) {
+            throw new IllegalArgumentException("Cannot store a non-square matrix in band form.");
+        }
+        if (isBandMatrix()) {
+            return new Matrix(this);
+        }
+        final Matrix sparse = toSparseMatrix();
+        final int[] rowStarts = sparse.sparseRowStarts();
+        final int[] columns = sparse.sparseColumns();
+        final double[] entries = sparse.sparseEntries();
+        int lower = 0, upper = 0;
         for (int row = 0; row < col_size; row++) {
+            if (rowStarts[row] < rowStarts[row + 1]) {
+                lower = Math.max(lower, row - columns[rowStarts[row]]);
+                upper = Math.max(upper, columns[rowStarts[row + 1] - 1] - row);
+            }
+        }
+        BandRows ret = new BandRows(new double[Math.multiplyExact(col_size, lower + upper + 1)], lower, upper, col_size);
+        for (int row = 0; row < col_size; row++) {
+            for (int k = rowStarts[row]; k < rowStarts[row + 1]; k++) {
+                ret.band[ret.index(row, columns[k])] = entries[k];
+            }
+        }
+        return new Matrix(ret).withStructure(structure);
+    }
+
+    // the storage behind a band matrix, shared like doubleValues and just as read-only
+    public double[] bandEntries() {
+        return band().band;
+    }
+
+    public int lowerBandwidth() {
+        return band().lower;
+    }
+
+    public int upperBandwidth() {
+        return band().upper;
+    }
+
+    private BandRows band() {
+        if (!(values instanceof BandRows b)) {
+            throw new IllegalStateException("Matrix is not a band matrix.");
+        }
+        return b;
+    }
+
+    // the arrays behind a sparse matrix, shared like doubleValues and just as read-only
+    public int[] sparseRowStarts() {
+        return sparse().rowStarts;
+    }
+
+    public int[] sparseColumns() {
+        return sparse().columns;
+    }
+
+    public double[] sparseEntries() {
+        return sparse().entries;
+    }
+
+    private SparseRows sparse() {
+        if (!(values instanceof SparseRows s)) {
+            throw new IllegalStateException("Matrix is not sparse.");
+        }
+        return s;
+    }
+
+    // the column of the first non-zero entry of a row, or rowSize() if the row is zero
+    public int firstNonZero(int row) {
+        checkRow(row);
+        if (values instanceof SparseRows s) {
+            for (int k = s.rowStarts[row]; k < s.rowStarts[row + 1]; k++) {
+                if (!new DoubleScalar(s.entries[k]).equals(0)) {
+                    return s.columns[k];
+                }
+            }
+            return row_size;
+        }
+        if (values instanceof BandRows b) {
+            for (int col = b.first(row); col < b.end(row); col++) {
+                if (!new DoubleScalar(b.band[b.index(row, col)]).equals(0)) {
+                    return col;
+                }
+            }
+            return row_size;
+        }
+        if (isImplicitDiagonal()) {
+            return diagonalEntry(row).equals(0) ? row_size : row;
+        }
+        for (int col = 0; col < row_size; col++) {
+            if (!get(row, col).equals(0)) {
+                return col;
+            }
+        }
+        return row_size;
+    }
+
+    // a dense copy of a double matrix's entries for the caller to write to
+    double[] denseCopy() {
+        final double[] dense = doubles;
+        return dense != null ? dense.clone() : ((DoubleView) values).assemble();
+    }
+
+    // entry (row, col) of a double matrix, wherever it is kept
+    double doubleAt(int row, int col) {
+        final double[] dense = doubles;
+        if (dense != null) {
+            return dense[row * row_size + col];
+        }
+        return values instanceof DoubleView view ? view.at(row, col) : doubleValue(values.get(row * row_size + col));
+    }
+
+    void copyRow(int row, double[] dest, int start) {
+        final double[] dense = doubles;
+        if (dense != null) {
+            System.arraycopy(dense, row * row_size, dest, start, row_size);
+        } else if (values instanceof DoubleView view) {
+            view.copyRow(row, dest, start);
+        } else {
             for (int col = 0; col < row_size; col++) {
-                this.values.add(vs.getVector(col).get(row));
+                dest[start + col] = doubleValue(values.get(row * row_size + col));
+            }
+        }
+    }
+
+    // a width x height window onto this matrix from (row, col), read down its columns when transposed; windows
+    // onto windows go straight to the storage underneath
+    private Matrix window(int row, int col, int width, int height, boolean transposed) {
+        if (isDoubleMatrix()) {
+            if (values instanceof DoubleStrided s) {
+                return new Matrix(new DoubleStrided(
+                        s.data, s.offset + row * s.rowStride + col * s.colStride,
+                        transposed ? s.colStride : s.rowStride, transposed ? s.rowStride : s.colStride,
+                        width, height));
             }
+            return new Matrix(new DoubleStrided(
+                    doubleValues(), row * row_size + col,
+                    transposed ? 1 : row_size, transposed ? row_size : 1,
+                    width, height));
+        }
+        if (values instanceof ScalarStrided s) {
+            return new Matrix(new ScalarStrided(
+                    s.data, s.offset + row * s.rowStride + col * s.colStride,
+                    transposed ? s.colStride : s.rowStride, transposed ? s.rowStride : s.colStride,
+                    width, height));
         }
+        return new Matrix(new ScalarStrided(
+                values instanceof ScalarView ? new ArrayList<>(values) : values, row * row_size + col,
+                transposed ? 1 : row_size, transposed ? row_size : 1,
+                width, height));
     }
 
     @Override
     public boolean equals(Object other) {
+        if (other instanceof Matrix m && m.values instanceof SparseRows a && values instanceof SparseRows b) {
+            return a.sameEntries(b);
+        }
+        if (other instanceof Matrix m && (isBandMatrix() || m.isBandMatrix()) && isCompressed() && m.isCompressed()) {
+            return toSparseMatrix().equals(m.toSparseMatrix());
+        }
         if (other instanceof Matrix) {
             return ((Matrix)other).values.equals(values);
         }
         return false;
     }
 
+    // kept as its non-zero entries alone, so that it must not be read entry by entry
+    private boolean isCompressed() {
+        return isSparseMatrix() || isBandMatrix();
+    }
+
     public int rowSize() { return row_size; }
     public int colSize() { return col_size; }
 
@@ -80,11 +556,15 @@ Matrix implements Value permits Vector {
                     String.format("Column index %d out of bounds for matrix with %d columns.", col, row_size)
             );
         }
-        List<Scalar> newValues = new ArrayList<>();
-        for (int row = 0; row < col_size; row++) {
-            newValues.add(get(row, col));
+        if (isCompressed()) {
+            final DoubleView s = (DoubleView) values;
+            double[] column = new double[col_size];
+            for (int row = 0; row < col_size; row++) {
+                column[row] = s.at(row, col);
+            }
+            return new Vector(new Matrix(column, 1, col_size));
         }
-        return new Vector(newValues);
+        return new Vector(window(0, col, 1, col_size, false));
     }
 
     public Vector getRowVector(int row) {
@@ -93,16 +573,17 @@ Matrix implements Value permits Vector {
                     String.format("Row index %d out of bounds for matrix with %d rows.", row, col_size)
             );
         }
-        List<Scalar> newValues = new ArrayList<>();
-        for (int col = 0; col < row_size; col++) {
-            newValues.add(get(row, col));
+        if (isCompressed()) {
+            double[] dense = new double[row_size];
+            ((DoubleView) values).copyRow(row, dense, 0);
+            return new Vector(new Matrix(dense, 1, row_size));
         }
-        return new Vector(newValues);
+        return new Vector(window(row, 0, 1, row_size, true));
     }
 
     public Vector asVector() {
         if (isColumnVector() || isRowVector()) {
-            return new Vector(this.values);
+            return new Vector(isColumnVector() ? this : transpose());
         }
         else {
             throw new ClassCastException("The given matrix is not a vector.");
@@ -120,37 +601,191 @@ Matrix implements Value permits Vector {
                     String.format("Row index %d out of bounds for matrix with %d rows.", row, col_size)
             );
         }
+        if (isCompressed()) {
+            return new DoubleScalar(((DoubleView) values).at(row, col));
+        }
         return values.get(row * row_size + col);
     }
 
-    public void set(int row, int col, Scalar value) {
-        if (col < 0 || col >= row_size) {
-            throw new IndexOutOfBoundsException(
-                    String.format("Column index %d out of bounds for matrix with %d columns.", col, row_size)
-            );
-        }
+    private void checkRow(int row) {
         if (row < 0 || row >= col_size) {
             throw new IndexOutOfBoundsException(
                     String.format("Row index %d out of bounds for matrix with %d rows.", row, col_size)
             );
         }
-        values.set(row * row_size + col, value);
+    }
+
+    // row operations leave this matrix alone and share every row of it with the result but the one they change,
+    // so each copies a single row instead of the whole matrix
+
+    public Matrix withRowsSwapped(int r1, int r2) {
+        checkRow(r1);
+        checkRow(r2);
+        if (isDoubleMatrix()) {
+            DoubleRows rows = doubleRows();
+            rows.set(r1, data(r2), start(r2));
+            rows.set(r2, data(r1), start(r1));
+            return new Matrix(rows);
+        }
+        ScalarRows rows = scalarRows();
+        Collections.swap(rows.rows, r1, r2);
+        return new Matrix(rows);
+    }
+
+    public Matrix withRowScaled(int row, Scalar scale) {
+        checkRow(row);
+        if (isDoubleMatrix()) {
+            final double s = doubleValue(scale);
+            final double[] a = data(row);
+            final int start = start(row);
+            double[] scaled = new double[row_size];
+            for (int col = 0; col < row_size; col++) {
+                scaled[col] = a[start + col] * s;
+            }
+            DoubleRows rows = doubleRows();
+            rows.set(row, scaled, 0);
+            return new Matrix(rows);
+        }
+        // an exact matrix stays exact, so a double factor is taken at its exact binary value
+        final Scalar factor = scale instanceof DoubleScalar ? new BigRationalScalar(scale) : scale;
+        ScalarAccumulator acc = new ScalarAccumulator();
+        ScalarRows rows = scalarRows();
+        List<Scalar> scaled = new ArrayList<>(row_size);
+        for (Scalar value : rows.rows.get(row)) {
+            scaled.add(value.equals(0) ? value : acc.set(value).multiply(factor).toScalar());
+        }
+        rows.rows.set(row, scaled);
+        return new Matrix(rows);
+    }
+
+    public Matrix withRowAdded(int rowTarget, int rowSource, Scalar scale) {
+        checkRow(rowTarget);
+        checkRow(rowSource);
+        if (isDoubleMatrix()) {
+            final double s = doubleValue(scale);
+            final double[] target = data(rowTarget);
+            final double[] source = data(rowSource);
+            final int t = start(rowTarget);
+            final int u = start(rowSource);
+            double[] sum = new double[row_size];
+            for (int col = 0; col < row_size; col++) {
+                sum[col] = target[t + col] + s * source[u + col];
+            }
+            DoubleRows rows = doubleRows();
+            rows.set(rowTarget, sum, 0);
+            return new Matrix(rows);
+        }
+        final Scalar factor = scale instanceof DoubleScalar ? new BigRationalScalar(scale) : scale;
+        ScalarAccumulator acc = new ScalarAccumulator();
+        ScalarRows rows = scalarRows();
+        final List<Scalar> target = rows.rows.get(rowTarget);
+        final List<Scalar> source = rows.rows.get(rowSource);
+        List<Scalar> sum = new ArrayList<>(row_size);
+        for (int col = 0; col < row_size; col++) {
+            Scalar sourceValue = source.get(col);
+            sum.add(sourceValue.equals(0)
+                    ? target.get(col)
+                    : acc.set(target.get(col)).addProduct(factor, sourceValue).toScalar());
+        }
+        rows.rows.set(rowTarget, sum);
+        return new Matrix(rows);
+    }
+
+    // where row r of a double matrix lives: data(r) from start(r)
+    private double[] data(int row) {
+        if (values instanceof DoubleRows rows) {
+            return rows.data[row];
+        }
+        return values instanceof DoubleStrided s && s.colStride == 1 ? s.data : doubleValues();
+    }
+
+    private int start(int row) {
+        if (values instanceof DoubleRows rows) {
+            return rows.start[row];
+        }
+        return values instanceof DoubleStrided s && s.colStride == 1 ? s.offset + row * s.rowStride : row * row_size;
+    }
+
+    // row r of an exact matrix
+    private List<Scalar> row(int row) {
+        return values instanceof ScalarRows rows ? rows.rows.get(row) : values.subList(row * row_size, (row + 1) * row_size);
+    }
+
+    // fresh row tables over this matrix's storage, for a row operation to change
+    private DoubleRows doubleRows() {
+        if (values instanceof DoubleRows rows) {
+            return new DoubleRows(rows.data.clone(), rows.start.clone(), row_size);
+        }
+        double[][] data = new double[col_size][];
+        int[] start = new int[col_size];
+        for (int row = 0; row < col_size; row++) {
+            data[row] = data(row);
+            start[row] = start(row);
+        }
+        return new DoubleRows(data, start, row_size);
+    }
+
+    private ScalarRows scalarRows() {
+        if (values instanceof ScalarRows rows) {
+            return new ScalarRows(new ArrayList<>(rows.rows), row_size);
+        }
+        List<List<Scalar>> rows = new ArrayList<>(col_size);
+        for (int row = 0; row < col_size; row++) {
+            rows.add(row(row));
+        }
+        return new ScalarRows(rows, row_size);
     }
 
     public Matrix multiply(Scalar other) {
-        Matrix ret = new Matrix(this);
-        for (int i = 0; i < ret.col_size*ret.row_size; i++) {
-            ret.values.set(i, this.values.get(i).multiply(other));
+        if (isImplicitDiagonal()) {
+            return mapDiagonal(entry -> entry.multiply(other));
         }
-        return ret;
+        if (values instanceof SparseRows s) {
+            return s.map(doubleValue(other), false).withStructure(scaledStructure(doubleValue(other)));
+        }
+        if (values instanceof BandRows b) {
+            return b.map(doubleValue(other), false).withStructure(scaledStructure(doubleValue(other)));
+        }
+        if (isDoubleMatrix() || other instanceof DoubleScalar) {
+            final double[] entries = asDoubles();
+            final double s = doubleValue(other);
+            double[] ret = new double[entries.length];
+            for (int i = 0; i < ret.length; i++) {
+                ret[i] = entries[i] * s;
+            }
+            return new Matrix(ret, row_size, col_size).withStructure(scaledStructure(s));
+        }
+        List<Scalar> ret = new ArrayList<>(values.size());
+        for (Scalar value : values) {
+            ret.add(value.multiply(other));
+        }
+        return new Matrix(ret, row_size, col_size).withStructure(scaledStructure(doubleValue(other)));
     }
 
     public Matrix divide(Scalar other) {
-        Matrix ret = new Matrix(this);
-        for (int i = 0; i < ret.col_size*ret.row_size; i++) {
-            ret.values.set(i, values.get(i).divide(other));
+        if (isImplicitDiagonal()) {
+            return mapDiagonal(entry -> entry.divide(other));
         }
-        return ret;
+        if (values instanceof SparseRows s) {
+            return s.map(doubleValue(other), true).withStructure(scaledStructure(1 / doubleValue(other)));
+        }
+        if (values instanceof BandRows b) {
+            return b.map(doubleValue(other), true).withStructure(scaledStructure(1 / doubleValue(other)));
+        }
+        if (isDoubleMatrix() || other instanceof DoubleScalar) {
+            final double[] entries = asDoubles();
+            final double s = doubleValue(other);
+            double[] ret = new double[entries.length];
+            for (int i = 0; i < ret.length; i++) {
+                ret[i] = entries[i] / s;
+            }
+            return new Matrix(ret, row_size, col_size).withStructure(scaledStructure(1 / s));
+        }
+        List<Scalar> ret = new ArrayList<>(values.size());
+        for (Scalar value : values) {
+            ret.add(value.divide(other));
+        }
+        return new Matrix(ret, row_size, col_size).withStructure(scaledStructure(1 / doubleValue(other)));
     }
 
     public Matrix multiply(Matrix other) {
@@ -162,50 +797,249 @@ Matrix implements Value permits Vector {
             ));
         }
 
-        Matrix ret = new Matrix(new ArrayList<Scalar>(col_size*other.row_size), other.row_size, col_size);
+        // an implicit identity costs nothing to multiply by, and two implicit diagonals make a third
+        final boolean toDouble = isDoubleMatrix() || other.isDoubleMatrix();
+        if (isImplicitDiagonal() && isIdentity()) {
+            return toDouble ? other.toDoubleMatrix() : new Matrix(other);
+        }
+        if (other.isImplicitDiagonal() && other.isIdentity()) {
+            return toDouble ? toDoubleMatrix() : new Matrix(this);
+        }
+        if (isImplicitDiagonal() && other.isImplicitDiagonal()) {
+            List<Scalar> entries = new ArrayList<>(row_size);
+            for (int i = 0; i < row_size; i++) {
+                entries.add(diagonalEntry(i).multiply(other.diagonalEntry(i)));
+            }
+            return diagonal(entries);
+        }
+        if (isImplicitDiagonal() && other.isSparseMatrix()) {
+            return SparseArithmetic.scale(other, diagonalValues(), true);
+        }
+        if (isSparseMatrix() && other.isImplicitDiagonal()) {
+            return SparseArithmetic.scale(this, other.diagonalValues(), false);
+        }
+        // a band times a dense matrix is a band's worth of work per entry; a band with anything else is multiplied
+        // as compressed rows
+        if (values instanceof BandRows b && !other.isCompressed() && !other.isImplicitDiagonal()) {
+            return b.times(other);
+        }
+        if (isBandMatrix() || other.isBandMatrix()) {
+            return (isBandMatrix() ? toSparseMatrix() : this).multiply(
+                    other.isBandMatrix() ? other.toSparseMatrix() : other);
+        }
+        if (isSparseMatrix() || other.isSparseMatrix()) {
+            return SparseArithmetic.multiply(this, other);
+        }
+        // a permutation or diagonal factor only reorders or scales the rows or columns of the other one
+        if (isPermutationMatrix()) {
+            final int[] p = permutation();
+            final Matrix ret = other.rowsPermuted(p, toDouble);
+            if (!other.isPermutationMatrix()) {
+                return ret;
+            }
+            final int[] q = other.permutation();
+            int[] product = new int[p.length];
+            for (int row = 0; row < p.length; row++) {
+                product[row] = q[p[row]];
+            }
+            return ret.withStructure(Structure.ofPermutation(product));
+        }
+        if (other.isPermutationMatrix()) {
+            return columnsPermuted(other.permutation(), toDouble);
+        }
+        if (isDiagonal()) {
+            return other.scaledBy(this, true, toDouble);
+        }
+        if (other.isDiagonal()) {
+            return scaledBy(other, false, toDouble);
+        }
+        if (toDouble) {
+            double[] c = MatrixMultiplication.multiply(asDoubles(), other.asDoubles(), col_size, row_size, other.row_size);
+            return new Matrix(c, other.row_size, col_size);
+        }
 
-        for (int i = 0; i < other.row_size*col_size; i++) {
-            ret.values.add(new DoubleScalar(0));
-            for (int j = 0; j < row_size; j++) {
-                Scalar current = ret.values.get(i);
-                Scalar a = values.get((i/other.row_size)*row_size+j);
-                Scalar b = other.values.get(i%other.row_size+j*other.row_size);
-                ret.values.set(i, current.add(a.multiply(b)));
+        List<Scalar> ret = new ArrayList<>(col_size * other.row_size);
+        ScalarAccumulator sum = new ScalarAccumulator();
+        for (int row = 0; row < col_size; row++) {
+            for (int col = 0; col < other.row_size; col++) {
+                sum.reset();
+                for (int j = 0; j < row_size; j++) {
+                    sum.addProduct(values.get(row * row_size + j), other.values.get(j * other.row_size + col));
+                }
+                ret.add(sum.toScalar());
             }
         }
+        return new Matrix(ret, other.row_size, col_size);
+    }
+
+    private boolean isIdentity() {
+        return isPermutationMatrix() && isUpperTriangular();
+    }
+
+    private double[] diagonalValues() {
+        double[] ret = new double[row_size];
+        for (int i = 0; i < row_size; i++) {
+            ret[i] = doubleAt(i, i);
+        }
         return ret;
     }
 
+    // P * this for a permutation matrix P: row i is row order[i] of this matrix, shared rather than copied
+    private Matrix rowsPermuted(int[] order, boolean toDouble) {
+        if (toDouble) {
+            final Matrix source = toDoubleMatrix();
+            double[][] data = new double[order.length][];
+            int[] start = new int[order.length];
+            for (int row = 0; row < order.length; row++) {
+                data[row] = source.data(order[row]);
+                start[row] = source.start(order[row]);
+            }
+            return new Matrix(new DoubleRows(data, start, row_size));
+        }
+        List<List<Scalar>> rows = new ArrayList<>(order.length);
+        for (int row : order) {
+            rows.add(row(row));
+        }
+        return new Matrix(new ScalarRows(rows, row_size));
+    }
+
+    // this * P for a permutation matrix P: column c of this matrix moves to column order[c]
+    private Matrix columnsPermuted(int[] order, boolean toDouble) {
+        if (toDouble) {
+            double[] ret = new double[row_size * col_size];
+            double[] source = new double[row_size];
+            for (int row = 0; row < col_size; row++) {
+                copyRow(row, source, 0);
+                for (int col = 0; col < row_size; col++) {
+                    ret[row * row_size + order[col]] = source[col];
+                }
+            }
+            return new Matrix(ret, row_size, col_size);
+        }
+        Scalar[] ret = new Scalar[row_size * col_size];
+        for (int row = 0; row < col_size; row++) {
+            for (int col = 0; col < row_size; col++) {
+                ret[row * row_size + order[col]] = values.get(row * row_size + col);
+            }
+        }
+        return new Matrix(Arrays.asList(ret), row_size, col_size);
+    }
+
+    // D * this (each row times its diagonal entry) or this * D (each column times its diagonal entry)
+    private Matrix scaledBy(Matrix diagonal, boolean rows, boolean toDouble) {
+        if (toDouble) {
+            double[] d = new double[diagonal.row_size];
+            for (int i = 0; i < d.length; i++) {
+                d[i] = diagonal.doubleAt(i, i);
+            }
+            double[] ret = new double[row_size * col_size];
+            for (int row = 0; row < col_size; row++) {
+                copyRow(row, ret, row * row_size);
+                for (int col = 0; col < row_size; col++) {
+                    ret[row * row_size + col] *= rows ? d[row] : d[col];
+                }
+            }
+            return new Matrix(ret, row_size, col_size);
+        }
+        List<Scalar> ret = new ArrayList<>(row_size * col_size);
+        for (int row = 0; row < col_size; row++) {
+            for (int col = 0; col < row_size; col++) {
+                final int i = rows ? row : col;
+                ret.add(diagonal.values.get(i * diagonal.row_size + i).multiply(values.get(row * row_size + col)));
+            }
+        }
+        return new Matrix(ret, row_size, col_size);
+    }
+
     public Matrix add(Matrix other) {
         if (col_size != other.col_size || row_size != other.row_size) {
             throw new IllegalArgumentException("Matrices must have same dimensions in order to add them.");
         }
+        if (other.isImplicitDiagonal()) {
+            return plusDiagonal(other, 1);
+        }
+        if (isImplicitDiagonal()) {
+            return other.plusDiagonal(this, 1);
+        }
+        if (values instanceof BandRows b && other.isBandMatrix()) {
+            return b.plus(other.band(), 1);
+        }
+        if (isCompressed() && other.isCompressed()) {
+            return SparseArithmetic.add(toSparseMatrix(), other.toSparseMatrix(), 1);
+        }
+        if (isDoubleMatrix() || other.isDoubleMatrix()) {
+            final double[] a = asDoubles();
+            final double[] b = other.asDoubles();
+            double[] ret = new double[a.length];
+            for (int i = 0; i < ret.length; i++) {
+                ret[i] = a[i] + b[i];
+            }
+            return new Matrix(ret, row_size, col_size);
+        }
 
-        Matrix ret = new Matrix(this);
-        for (int i = 0; i < ret.col_size*ret.row_size; i++) {
-            ret.values.set(i, values.get(i).add(other.values.get(i)));
+        List<Scalar> ret = new ArrayList<>(values.size());
+        for (int i = 0; i < col_size * row_size; i++) {
+            ret.add(values.get(i).add(other.values.get(i)));
         }
-        return ret;
+        return new Matrix(ret, row_size, col_size);
     }
 
     public Matrix subtract(Matrix other) {
         if (col_size != other.col_size || row_size != other.row_size) {
             throw new IllegalArgumentException("Matrices must have same dimensions in order to subtract them.");
         }
+        if (other.isImplicitDiagonal()) {
+            return plusDiagonal(other, -1);
+        }
+        if (isImplicitDiagonal()) {
+            return other.negate().plusDiagonal(this, 1);
+        }
+        if (values instanceof BandRows b && other.isBandMatrix()) {
+            return b.plus(other.band(), -1);
+        }
+        if (isCompressed() && other.isCompressed()) {
+            return SparseArithmetic.add(toSparseMatrix(), other.toSparseMatrix(), -1);
+        }
+        if (isDoubleMatrix() || other.isDoubleMatrix()) {
+            final double[] a = asDoubles();
+            final double[] b = other.asDoubles();
+            double[] ret = new double[a.length];
+            for (int i = 0; i < ret.length; i++) {
+                ret[i] = a[i] - b[i];
+            }
+            return new Matrix(ret, row_size, col_size);
+        }
 
-        Matrix ret = new Matrix(this);
-        for (int i = 0; i < ret.col_size*ret.row_size; i++) {
-            ret.values.set(i, values.get(i).subtract(other.values.get(i)));
+        List<Scalar> ret = new ArrayList<>(values.size());
+        for (int i = 0; i < col_size * row_size; i++) {
+            ret.add(values.get(i).subtract(other.values.get(i)));
+        }
+        return new Matrix(ret, row_size, col_size);
+    }
+
+    public Matrix negate() {
+        if (isImplicitDiagonal()) {
+            return mapDiagonal(Scalar::negate);
+        }
+        if (values instanceof SparseRows s) {
+            return s.map(-1, false).withStructure(scaledStructure(-1));
+        }
+        if (values instanceof BandRows b) {
+            return b.map(-1, false).withStructure(scaledStructure(-1));
+        }
+        if (isDoubleMatrix()) {
+            final double[] a = doubleValues();
+            double[] ret = new double[a.length];
+            for (int i = 0; i < ret.length; i++) {
+                ret[i] = -a[i];
+            }
+            return new Matrix(ret, row_size, col_size).withStructure(scaledStructure(-1));
         }
-        return ret;
-    }
-
-    public Matrix negate() {
         List<Scalar> l = new ArrayList<>();
         for (int i = 0; i < col_size*row_size; i++) {
             l.add(values.get(i).negate());
         }
-        return new Matrix(l, row_size, col_size);
+        return new Matrix(l, row_size, col_size).withStructure(scaledStructure(-1));
     }
 
     public Matrix augmentColumns(Matrix other) {
@@ -216,26 +1050,37 @@ Matrix implements Value permits Vector {
                     other.col_size
             ));
         }
-        List<Scalar> newValues = new ArrayList<>(col_size * (row_size + other.row_size));
-        for (int row = 0; row < col_size; row++) {
-            for (int col = 0; col < row_size; col++) {
-                newValues.add(get(row, col));
-            }
-            for (int col = 0; col < other.row_size; col++) {
-                newValues.add(other.get(row, col));
-            }
-        }
-        return new Matrix(newValues, row_size + other.row_size, col_size);
+        return beside(List.of(this, other), col_size);
     }
 
     public Matrix augmentRows(Matrix other) {
         if (row_size != other.row_size) {
             throw new IllegalArgumentException("Cannot row-augment matrices with different row sizes.");
         }
-        List<Scalar> newValues = new ArrayList<>(values.size() + other.values.size());
-        newValues.addAll(values);
-        newValues.addAll(other.values);
-        return new Matrix(newValues, row_size, col_size + other.col_size);
+        // the rows of both, stacked
+        if (isDoubleMatrix() || other.isDoubleMatrix()) {
+            final Matrix top = toDoubleMatrix();
+            final Matrix bottom = other.toDoubleMatrix();
+            double[][] data = new double[col_size + other.col_size][];
+            int[] start = new int[data.length];
+            for (int row = 0; row < col_size; row++) {
+                data[row] = top.data(row);
+                start[row] = top.start(row);
+            }
+            for (int row = 0; row < other.col_size; row++) {
+                data[col_size + row] = bottom.data(row);
+                start[col_size + row] = bottom.start(row);
+            }
+            return new Matrix(new DoubleRows(data, start, row_size));
+        }
+        List<List<Scalar>> rows = new ArrayList<>(col_size + other.col_size);
+        for (int row = 0; row < col_size; row++) {
+            rows.add(row(row));
+        }
+        for (int row = 0; row < other.col_size; row++) {
+            rows.add(other.row(row));
+        }
+        return new Matrix(new ScalarRows(rows, row_size));
     }
 
     public Pair<Matrix, Matrix> partitionColumns(int col) {
@@ -250,20 +1095,9 @@ Matrix implements Value permits Vector {
         if (col == row_size) {
             return new Pair<>(new Matrix(this), null);
         }
-        List<Scalar> leftValues = new ArrayList<>(col * col_size);
-        List<Scalar> rightValues = new ArrayList<>((row_size - col) * col_size);
-        for (int r = 0; r < col_size; r++) {
-            for (int c = 0; c < row_size; c++) {
-                if (c < col) {
-                    leftValues.add(get(r, c));
-                } else {
-                    rightValues.add(get(r, c));
-                }
-            }
-        }
         return new Pair<>(
-                new Matrix(leftValues, col, col_size),
-                new Matrix(rightValues, (row_size - col), col_size)
+                window(0, 0, col, col_size, false),
+                window(0, col, row_size - col, col_size, false)
         );
     }
 
@@ -279,38 +1113,34 @@ Matrix implements Value permits Vector {
         if (row == col_size) {
             return new Pair<>(new Matrix(this), null);
         }
-        List<Scalar> leftValues = new ArrayList<>(row * row_size);
-        List<Scalar> rightValues = new ArrayList<>((col_size - row) * row_size);
-        for (int i = 0; i < col_size * row_size; i++) {
-            if (i < row * row_size) {
-                leftValues.add(values.get(i));
-            } else {
-                rightValues.add(values.get(i));
-            }
-        }
         return new Pair<>(
-                new Matrix(leftValues, row_size, row),
-                new Matrix(rightValues, row_size, (col_size - row))
+                window(0, 0, row_size, row, false),
+                window(row, 0, row_size, col_size - row, false)
         );
     }
 
     public Matrix transpose() {
-        List<Scalar> transposedValues = new ArrayList<>(row_size * col_size);
-        for (int row = 0; row < row_size; row++) {
-            for (int col = 0; col < col_size; col++) {
-                transposedValues.add(get(col, row)); // NOTE: col and row are reversed
-            }
+        if (isImplicitDiagonal()) {
+            return new Matrix(this);
         }
-        return new Matrix(transposedValues, col_size, row_size);
+        final Structure s = structure;
+        final Matrix ret = isSparseMatrix() ? SparseArithmetic.transpose(this)
+                : values instanceof BandRows b ? b.transposed()
+                : window(0, 0, col_size, row_size, true);
+        return ret.withStructure(s != null ? s.transposed() : null);
     }
 
     public boolean isUpperTriangular() {
+        return structure().upper();
+    }
+
+    public boolean isUpperTriangular(double epsilon) {
         if (row_size != col_size) {
             return false;
         }
         for (int row = 1; row < col_size; row++) {
             for (int col = 0; col < row; col++) {
-                if (!get(row, col).equals(0)) {
+                if (!get(row, col).equals(0, epsilon)) {
                     return false;
                 }
             }
@@ -318,13 +1148,52 @@ Matrix implements Value permits Vector {
         return true;
     }
 
-    public boolean isUpperTriangular(double epsilon) {
+    public boolean isLowerTriangular() {
+        return structure().lower();
+    }
+
+    public boolean isTriangular() {
+        return isLowerTriangular() || isUpperTriangular();
+    }
+
+    public boolean isDiagonal() {
+        return isLowerTriangular() && isUpperTriangular();
+    }
+
+    public boolean isPermutationMatrix() {
+        return structure().permutation() != null;
+    }
+
+    // exactly, entry for entry. Not cached, since a matrix that is not symmetric is nearly always found out within its
+    // first few rows
+    public boolean isSymmetric() {
         if (row_size != col_size) {
             return false;
         }
+        final Structure known = structure;
+        if (known != null && known.upper() && known.lower()) {
+            return true;
+        }
+        if (values instanceof BandRows b) {
+            for (int row = 0; row < col_size; row++) {
+                for (int col = b.first(row); col < b.end(row); col++) {
+                    if (b.band[b.index(row, col)] != b.at(col, row)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        if (isSparseMatrix()) {
+            Matrix t = SparseArithmetic.transpose(this);
+            return Arrays.equals(sparseRowStarts(), t.sparseRowStarts())
+                    && Arrays.equals(sparseColumns(), t.sparseColumns())
+                    && Arrays.equals(sparseEntries(), t.sparseEntries());
+        }
+        final boolean isDouble = isDoubleMatrix();
         for (int row = 1; row < col_size; row++) {
             for (int col = 0; col < row; col++) {
-                if (!get(row, col).equals(0, epsilon)) {
+                if (isDouble ? doubleAt(row, col) != doubleAt(col, row) : !get(row, col).equals(get(col, row))) {
                     return false;
                 }
             }
@@ -332,26 +1201,134 @@ Matrix implements Value permits Vector {
         return true;
     }
 
-    public boolean isLowerTriangular() {
+    // for a permutation matrix, the column of the one in each row; shared, so it must not be written
+    public int[] permutation() {
+        final int[] permutation = structure().permutation();
+        if (permutation == null) {
+            throw new IllegalStateException("Matrix is not a permutation matrix.");
+        }
+        return permutation;
+    }
+
+    private record Structure(boolean upper, boolean lower, int[] permutation) {
+        static Structure ofDiagonal(int n, boolean ones) {
+            if (!ones) {
+                return new Structure(true, true, null);
+            }
+            int[] identity = new int[n];
+            for (int i = 0; i < n; i++) {
+                identity[i] = i;
+            }
+            return new Structure(true, true, identity);
+        }
+
+        static Structure ofPermutation(int[] permutation) {
+            boolean identity = true;
+            for (int row = 0; row < permutation.length && identity; row++) {
+                identity = permutation[row] == row;
+            }
+            return new Structure(identity, identity, permutation);
+        }
+
+        Structure transposed() {
+            if (permutation == null) {
+                return new Structure(lower, upper, null);
+            }
+            int[] inverse = new int[permutation.length];
+            for (int row = 0; row < permutation.length; row++) {
+                inverse[permutation[row]] = row;
+            }
+            return new Structure(lower, upper, inverse);
+        }
+
+        // every entry multiplied by a non-zero s keeps its zeros, but ones stay ones only for s = 1
+        Structure scaled(double s) {
+            return s == 1 ? this : new Structure(upper, lower, null);
+        }
+    }
+
+    private Structure structure() {
+        Structure ret = structure;
+        if (ret == null) {
+            ret = scanStructure();
+            structure = ret;
+        }
+        return ret;
+    }
+
+    // one pass over the entries, given up as soon as nothing is left to find
+    private Structure scanStructure() {
         if (row_size != col_size) {
-            return false;
+            return new Structure(false, false, null);
         }
-        for (int col = 1; col < row_size; col++) {
-            for (int row = 0; row < col; row++) {
-                if (!get(row, col).equals(0)) {
-                    return false;
+        final int n = row_size;
+        boolean upper = true, lower = true;
+        int[] permutation = new int[n];
+        boolean[] taken = new boolean[n];
+        boolean isPermutation = true;
+        double[] dense = isDoubleMatrix() && !isCompressed() ? new double[n] : null;
+        for (int row = 0; row < n && (upper || lower || isPermutation); row++) {
+            int ones = 0;
+            if (values instanceof SparseRows sparse) {
+                for (int k = sparse.rowStarts[row]; k < sparse.rowStarts[row + 1]; k++) {
+                    if (sparse.entries[k] != 0) {
+                        final int col = sparse.columns[k];
+                        upper &= col >= row;
+                        lower &= col <= row;
+                        isPermutation &= sparse.entries[k] == 1 && ones++ == 0 && !taken[col];
+                        if (isPermutation) {
+                            permutation[row] = col;
+                            taken[col] = true;
+                        }
+                    }
+                }
+            } else if (values instanceof BandRows band) {
+                for (int col = band.first(row); col < band.end(row); col++) {
+                    final double entry = band.band[band.index(row, col)];
+                    if (entry != 0) {
+                        upper &= col >= row;
+                        lower &= col <= row;
+                        isPermutation &= entry == 1 && ones++ == 0 && !taken[col];
+                        if (isPermutation) {
+                            permutation[row] = col;
+                            taken[col] = true;
+                        }
+                    }
+                }
+            } else {
+                if (dense != null) {
+                    copyRow(row, dense, 0);
+                }
+                for (int col = 0; col < n; col++) {
+                    final Scalar exact = dense == null ? values.get(row * n + col) : null;
+                    if (dense != null ? dense[col] == 0 : exact.equals(0)) {
+                        continue;
+                    }
+                    upper &= col >= row;
+                    lower &= col <= row;
+                    isPermutation &= (dense != null ? dense[col] == 1 : exact.equals(1)) && ones++ == 0 && !taken[col];
+                    if (isPermutation) {
+                        permutation[row] = col;
+                        taken[col] = true;
+                    }
                 }
             }
+            isPermutation &= ones == 1;
         }
-        return true;
+        return new Structure(upper, lower, isPermutation ? permutation : null);
     }
 
-    public boolean isTriangular() {
-        return isLowerTriangular() || isUpperTriangular();
+    private Structure scaledStructure(double s) {
+        final Structure known = structure;
+        return known != null && s != 0 && Double.isFinite(s) ? known.scaled(s) : null;
     }
 
-    public boolean isDiagonal() {
-        return isLowerTriangular() && isUpperTriangular();
+    // structure an operation has worked out for its result, so the result need not be scanned for it
+    private Matrix withStructure(Structure s) {
+        if (s != null) {
+            structure = s;
+        }
+        return this;
     }
 
     @Override
@@ -376,6 +1353,17 @@ Matrix implements Value permits Vector {
 
     @Override
     public String print() {
+        if (isSparseMatrix() && (long) row_size * col_size > PRINTED_SPARSE_ENTRIES) {
+            return String.format("[  %dx%d sparse matrix, %d stored entries  ]",
+                    col_size, row_size, sparseEntries().length);
+        }
+        if (isBandMatrix() && (long) row_size * col_size > PRINTED_SPARSE_ENTRIES) {
+            return String.format("[  %dx%d band matrix, %d below and %d above the diagonal  ]",
+                    col_size, row_size, lowerBandwidth(), upperBandwidth());
+        }
+        if (isImplicitDiagonal() && (long) row_size * col_size > PRINTED_SPARSE_ENTRIES) {
+            return String.format("[  %dx%d %s matrix  ]", col_size, row_size, isIdentity() ? "identity" : "diagonal");
+        }
         List<Integer> maxLengths = findMaxLengths();
         StringBuilder stringBuilder = new StringBuilder();
         for (int r = 0; r < col_size; r++) {
@@ -399,6 +1387,9 @@ Matrix implements Value permits Vector {
     }
 
     public boolean isFractionMatrix() {
+        if (isDoubleMatrix()) {
+            return false;
+        }
         for (int i = 0; i < row_size * col_size; i++) {
             if (values.get(i) instanceof DoubleScalar) {
                 return false;
@@ -408,11 +1399,13 @@ Matrix implements Value permits Vector {
     }
 
     public Matrix toDoubleMatrix() {
-        List<Scalar> nvalues = new ArrayList<>();
-        for (int i = 0; i < row_size * col_size; i++) {
-            nvalues.add(new DoubleScalar(values.get(i)));
+        if (isDoubleMatrix()) {
+            return new Matrix(this);
         }
-        return new Matrix(nvalues, row_size, col_size);
+        if (isImplicitDiagonal()) {
+            return mapDiagonal(entry -> new DoubleScalar(doubleValue(entry)));
+        }
+        return new Matrix(asDoubles(), row_size, col_size);
     }
 
     public Matrix toFractionMatrix() {
@@ -422,4 +1415,467 @@ Matrix implements Value permits Vector {
         }
         return new Matrix(nvalues, row_size, col_size);
     }
+
+    // exposes a double array as a list of scalars so existing element-wise code keeps working
+    private static final class DoubleValues extends AbstractList<Scalar> implements RandomAccess {
+        private final double[] data;
+
+        DoubleValues(double[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public Scalar get(int i) {
+            return new DoubleScalar(data[i]);
+        }
+
+        @Override
+        public Scalar set(int i, Scalar value) {
+            Scalar old = new DoubleScalar(data[i]);
+            data[i] = doubleValue(value);
+            return old;
+        }
+
+        @Override
+        public int size() {
+            return data.length;
+        }
+    }
+
+    // entries read out of the storage of other matrices rather than held: the rows of another matrix after a row
+    // operation, a strided window onto one, or several side by side. A double matrix backed by a view assembles its
+    // dense array the first time something asks for it
+    private abstract static class DoubleView extends AbstractList<Scalar> implements RandomAccess {
+        final int width;
+        final int height;
+
+        DoubleView(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        abstract double at(int row, int col);
+
+        void copyRow(int row, double[] dest, int start) {
+            for (int col = 0; col < width; col++) {
+                dest[start + col] = at(row, col);
+            }
+        }
+
+        double[] assemble() {
+            double[] ret = new double[width * height];
+            for (int row = 0; row < height; row++) {
+                copyRow(row, ret, row * width);
+            }
+            return ret;
+        }
+
+        @Override
+        public Scalar get(int i) {
+            return new DoubleScalar(at(i / width, i % width));
+        }
+
+        @Override
+        public int size() {
+            return width * height;
+        }
+    }
+
+    private abstract static class ScalarView extends AbstractList<Scalar> implements RandomAccess {
+        final int width;
+        final int height;
+
+        ScalarView(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        abstract Scalar at(int row, int col);
+
+        @Override
+        public Scalar get(int i) {
+            return at(i / width, i % width);
+        }
+
+        @Override
+        public int size() {
+            return width * height;
+        }
+    }
+
+    // row r is data[r] from start[r], mostly still the storage of the matrix a row operation was applied to
+    private static final class DoubleRows extends DoubleView {
+        private final double[][] data;
+        private final int[] start;
+
+        DoubleRows(double[][] data, int[] start, int width) {
+            super(width, data.length);
+            this.data = data;
+            this.start = start;
+        }
+
+        void set(int row, double[] data, int start) {
+            this.data[row] = data;
+            this.start[row] = start;
+        }
+
+        @Override
+        double at(int row, int col) {
+            return data[row][start[row] + col];
+        }
+
+        @Override
+        void copyRow(int row, double[] dest, int start) {
+            System.arraycopy(data[row], this.start[row], dest, start, width);
+        }
+    }
+
+    // each row a list of its own or a slice of another matrix's values
+    private static final class ScalarRows extends ScalarView {
+        private final List<List<Scalar>> rows;
+
+        ScalarRows(List<List<Scalar>> rows, int width) {
+            super(width, rows.size());
+            this.rows = rows;
+        }
+
+        @Override
+        Scalar at(int row, int col) {
+            return rows.get(row).get(col);
+        }
+    }
+
+    // entry (row, col) is data[offset + row * rowStride + col * colStride]
+    private static final class DoubleStrided extends DoubleView {
+        private final double[] data;
+        private final int offset;
+        private final int rowStride;
+        private final int colStride;
+
+        DoubleStrided(double[] data, int offset, int rowStride, int colStride, int width, int height) {
+            super(width, height);
+            this.data = data;
+            this.offset = offset;
+            this.rowStride = rowStride;
+            this.colStride = colStride;
+        }
+
+        @Override
+        double at(int row, int col) {
+            return data[offset + row * rowStride + col * colStride];
+        }
+
+        @Override
+        void copyRow(int row, double[] dest, int start) {
+            if (colStride == 1) {
+                System.arraycopy(data, offset + row * rowStride, dest, start, width);
+            } else {
+                super.copyRow(row, dest, start);
+            }
+        }
+    }
+
+    private static final class ScalarStrided extends ScalarView {
+        private final List<Scalar> data;
+        private final int offset;
+        private final int rowStride;
+        private final int colStride;
+
+        ScalarStrided(List<Scalar> data, int offset, int rowStride, int colStride, int width, int height) {
+            super(width, height);
+            this.data = data;
+            this.offset = offset;
+            this.rowStride = rowStride;
+            this.colStride = colStride;
+        }
+
+        @Override
+        Scalar at(int row, int col) {
+            return data.get(offset + row * rowStride + col * colStride);
+        }
+    }
+
+    // matrices of one height side by side, part p from column starts[p]; no part is empty
+    private static final class DoubleBeside extends DoubleView {
+        private final Matrix[] parts;
+        private final int[] starts;
+
+        DoubleBeside(Matrix[] parts, int[] starts, int width, int height) {
+            super(width, height);
+            this.parts = parts;
+            this.starts = starts;
+        }
+
+        @Override
+        double at(int row, int col) {
+            final int p = part(starts, col);
+            return parts[p].doubleAt(row, col - starts[p]);
+        }
+
+        @Override
+        void copyRow(int row, double[] dest, int start) {
+            for (int p = 0; p < parts.length; p++) {
+                parts[p].copyRow(row, dest, start + starts[p]);
+            }
+        }
+    }
+
+    private static final class ScalarBeside extends ScalarView {
+        private final Matrix[] parts;
+        private final int[] starts;
+
+        ScalarBeside(Matrix[] parts, int[] starts, int width, int height) {
+            super(width, height);
+            this.parts = parts;
+            this.starts = starts;
+        }
+
+        @Override
+        Scalar at(int row, int col) {
+            final int p = part(starts, col);
+            return parts[p].get(row, col - starts[p]);
+        }
+    }
+
+    private static final class SparseRows extends DoubleView {
+        private final int[] rowStarts;
+        private final int[] columns;
+        private final double[] entries;
+
+        SparseRows(int[] rowStarts, int[] columns, double[] entries, int width, int height) {
+            super(width, height);
+            this.rowStarts = rowStarts;
+            this.columns = columns;
+            this.entries = entries;
+        }
+
+        @Override
+        double at(int row, int col) {
+            final int k = Arrays.binarySearch(columns, rowStarts[row], rowStarts[row + 1], col);
+            return k >= 0 ? entries[k] : 0;
+        }
+
+        @Override
+        void copyRow(int row, double[] dest, int start) {
+            Arrays.fill(dest, start, start + width, 0);
+            for (int k = rowStarts[row]; k < rowStarts[row + 1]; k++) {
+                dest[start + columns[k]] = entries[k];
+            }
+        }
+
+        @Override
+        double[] assemble() {
+            checkListable();
+            return super.assemble();
+        }
+
+        @Override
+        public int size() {
+            checkListable();
+            return super.size();
+        }
+
+        // a list or a dense array holds at most an int's worth of entries, which a sparse matrix need not fit in
+        private void checkListable() {
+            if ((long) width * height > Integer.MAX_VALUE) {
+                throw new IllegalStateException(String.format(
+                        "A %dx%d sparse matrix is too large to hold densely.", height, width
+                ));
+            }
+        }
+
+        // every entry multiplied or divided by s, on the same structure
+        Matrix map(double s, boolean divide) {
+            double[] ret = new double[entries.length];
+            for (int k = 0; k < ret.length; k++) {
+                ret[k] = divide ? entries[k] / s : entries[k] * s;
+            }
+            return new Matrix(rowStarts, columns, ret, width, height);
+        }
+
+        // equal entries to within DoubleScalar's epsilon, where an entry one of them leaves out is zero
+        boolean sameEntries(SparseRows other) {
+            if (width != other.width || height != other.height) {
+                return false;
+            }
+            for (int row = 0; row < height; row++) {
+                int k = rowStarts[row], l = other.rowStarts[row];
+                final int end = rowStarts[row + 1], otherEnd = other.rowStarts[row + 1];
+                while (k < end || l < otherEnd) {
+                    final int col = Math.min(k < end ? columns[k] : width, l < otherEnd ? other.columns[l] : width);
+                    final double a = k < end && columns[k] == col ? entries[k++] : 0;
+                    final double b = l < otherEnd && other.columns[l] == col ? other.entries[l++] : 0;
+                    if (!new DoubleScalar(a).equals(new DoubleScalar(b))) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    // n x n, with entry (row, col) at band[index(row, col)] for col from first(row) up to end(row) and zero elsewhere
+    private static final class BandRows extends DoubleView {
+        private final double[] band;
+        private final int lower;
+        private final int upper;
+        private final int stride;
+
+        BandRows(double[] band, int lower, int upper, int n) {
+            super(n, n);
+            this.band = band;
+            this.lower = lower;
+            this.upper = upper;
+            this.stride = lower + upper + 1;
+        }
+
+        int first(int row) {
+            return Math.max(0, row - lower);
+        }
+
+        int end(int row) {
+            return (int) Math.min(width, (long) row + upper + 1);
+        }
+
+        int index(int row, int col) {
+            return row * stride + col - row + lower;
+        }
+
+        @Override
+        double at(int row, int col) {
+            return col < first(row) || col >= end(row) ? 0 : band[index(row, col)];
+        }
+
+        @Override
+        void copyRow(int row, double[] dest, int start) {
+            Arrays.fill(dest, start, start + width, 0);
+            for (int col = first(row); col < end(row); col++) {
+                dest[start + col] = band[index(row, col)];
+            }
+        }
+
+        @Override
+        double[] assemble() {
+            checkListable();
+            return super.assemble();
+        }
+
+        @Override
+        public int size() {
+            checkListable();
+            return super.size();
+        }
+
+        private void checkListable() {
+            if ((long) width * height > Integer.MAX_VALUE) {
+                throw new IllegalStateException(String.format(
+                        "A %dx%d band matrix is too large to hold densely.", height, width
+                ));
+            }
+        }
+
+        Matrix map(double s, boolean divide) {
+            double[] ret = new double[band.length];
+            for (int k = 0; k < ret.length; k++) {
+                ret[k] = divide ? band[k] / s : band[k] * s;
+            }
+            return banded(ret, lower, upper, width);
+        }
+
+        // this + sign * other, in a band wide enough for both
+        Matrix plus(BandRows other, double sign) {
+            BandRows ret = new BandRows(
+                    new double[Math.multiplyExact(width, Math.max(lower, other.lower) + Math.max(upper, other.upper) + 1)],
+                    Math.max(lower, other.lower), Math.max(upper, other.upper), width);
+            for (int row = 0; row < height; row++) {
+                for (int col = ret.first(row); col < ret.end(row); col++) {
+                    ret.band[ret.index(row, col)] = at(row, col) + sign * other.at(row, col);
+                }
+            }
+            return new Matrix(ret);
+        }
+
+        Matrix transposed() {
+            BandRows ret = new BandRows(new double[band.length], upper, lower, width);
+            for (int row = 0; row < height; row++) {
+                for (int col = first(row); col < end(row); col++) {
+                    ret.band[ret.index(col, row)] = band[index(row, col)];
+                }
+            }
+            return new Matrix(ret);
+        }
+
+        // this * other for a dense other, such as a vector
+        Matrix times(Matrix other) {
+            final int k = other.row_size;
+            final double[] b = other.isDoubleMatrix() ? other.doubleValues() : other.asDoubles();
+            double[] c = new double[Math.multiplyExact(height, k)];
+            for (int row = 0; row < height; row++) {
+                for (int col = first(row); col < end(row); col++) {
+                    final double s = band[index(row, col)];
+                    if (s == 0) {
+                        continue;
+                    }
+                    for (int j = 0; j < k; j++) {
+                        c[row * k + j] += s * b[col * k + j];
+                    }
+                }
+            }
+            return new Matrix(c, k, height);
+        }
+    }
+
+    // n x n and zero off the diagonal, which is diagonal[i] down its length or value all the way for a scaled
+    // identity
+    private static final class DoubleDiagonal extends DoubleView {
+        private final double[] diagonal;
+        private final double value;
+
+        DoubleDiagonal(int n, double[] diagonal, double value) {
+            super(n, n);
+            this.diagonal = diagonal;
+            this.value = value;
+        }
+
+        double entry(int i) {
+            return diagonal != null ? diagonal[i] : value;
+        }
+
+        @Override
+        double at(int row, int col) {
+            return row == col ? entry(row) : 0;
+        }
+
+        @Override
+        void copyRow(int row, double[] dest, int start) {
+            Arrays.fill(dest, start, start + width, 0);
+            dest[start + row] = entry(row);
+        }
+    }
+
+    private static final class ScalarDiagonal extends ScalarView {
+        private static final Scalar ZERO = new FractionScalar(0);
+        private final List<Scalar> diagonal;
+        private final Scalar value;
+
+        ScalarDiagonal(int n, List<Scalar> diagonal, Scalar value) {
+            super(n, n);
+            this.diagonal = diagonal;
+            this.value = value;
+        }
+
+        Scalar entry(int i) {
+            return diagonal != null ? diagonal.get(i) : value;
+        }
+
+        @Override
+        Scalar at(int row, int col) {
+            return row == col ? entry(row) : ZERO;
+        }
+    }
+
+    private static int part(int[] starts, int col) {
+        final int p = Arrays.binarySearch(starts, col);
+        return p >= 0 ? p : -p - 2;
+    }
 }
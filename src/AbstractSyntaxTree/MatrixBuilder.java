@@ -0,0 +1,184 @@
+package AbstractSyntaxTree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// A mutable working copy of a matrix for the algorithms. It reads from the matrix it starts from until the first
+// write copies that into storage of its own, and build() hands the storage over to a Matrix, after which the next
+// write copies again.
+public final class MatrixBuilder {
+    private final int row_size;
+    private final int col_size;
+    private Matrix source;
+    // null until the first write
+    private double[] doubles;
+    private List<Scalar> values;
+
+    public MatrixBuilder(Matrix m) {
+        this.row_size = m.row_size;
+        this.col_size = m.col_size;
+        this.source = m;
+    }
+
+    private void own() {
+        if (source == null) {
+            return;
+        }
+        if (source.isDoubleMatrix()) {
+            doubles = source.denseCopy();
+        } else {
+            values = new ArrayList<>(source.values);
+        }
+        source = null;
+    }
+
+    public int rowSize() { return row_size; }
+    public int colSize() { return col_size; }
+
+    public boolean isDoubleMatrix() {
+        return source != null ? source.isDoubleMatrix() : doubles != null;
+    }
+
+    // the row-major array being built; unlike Matrix.doubleValues, this one is for writing
+    public double[] doubleValues() {
+        if (!isDoubleMatrix()) {
+            throw new IllegalStateException("Matrix is not backed by doubles.");
+        }
+        own();
+        return doubles;
+    }
+
+    private int index(int row, int col) {
+        if (col < 0 || col >= row_size) {
+            throw new IndexOutOfBoundsException(
+                    String.format("Column index %d out of bounds for matrix with %d columns.", col, row_size)
+            );
+        }
+        checkRow(row);
+        return row * row_size + col;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= col_size) {
+            throw new IndexOutOfBoundsException(
+                    String.format("Row index %d out of bounds for matrix with %d rows.", row, col_size)
+            );
+        }
+    }
+
+    public Scalar get(int row, int col) {
+        final int i = index(row, col);
+        if (source != null) {
+            return source.get(row, col);
+        }
+        return doubles != null ? new DoubleScalar(doubles[i]) : values.get(i);
+    }
+
+    public void set(int row, int col, Scalar value) {
+        final int i = index(row, col);
+        own();
+        if (doubles != null) {
+            doubles[i] = Matrix.doubleValue(value);
+        } else {
+            values.set(i, value);
+        }
+    }
+
+    public void swapRows(int r1, int r2) {
+        checkRow(r1);
+        checkRow(r2);
+        if (r1 == r2) {
+            return;
+        }
+        own();
+        if (doubles != null) {
+            for (int col = 0; col < row_size; col++) {
+                double temp = doubles[r1 * row_size + col];
+                doubles[r1 * row_size + col] = doubles[r2 * row_size + col];
+                doubles[r2 * row_size + col] = temp;
+            }
+            return;
+        }
+        for (int col = 0; col < row_size; col++) {
+            Scalar temp = values.get(r1 * row_size + col);
+            values.set(r1 * row_size + col, values.get(r2 * row_size + col));
+            values.set(r2 * row_size + col, temp);
+        }
+    }
+
+    public void scaleRow(int row, Scalar scale) {
+        checkRow(row);
+        own();
+        if (doubles != null) {
+            final double s = Matrix.doubleValue(scale);
+            for (int col = row * row_size; col < (row + 1) * row_size; col++) {
+                doubles[col] *= s;
+            }
+            return;
+        }
+        // an exact matrix stays exact, so a double factor is taken at its exact binary value
+        final Scalar factor = scale instanceof DoubleScalar ? new BigRationalScalar(scale) : scale;
+        ScalarAccumulator acc = new ScalarAccumulator();
+        for (int col = row * row_size; col < (row + 1) * row_size; col++) {
+            Scalar value = values.get(col);
+            if (!value.equals(0)) {
+                values.set(col, acc.set(value).multiply(factor).toScalar());
+            }
+        }
+    }
+
+    public void addScaledRow(int rowTarget, int rowSource, Scalar scale) {
+        checkRow(rowTarget);
+        checkRow(rowSource);
+        own();
+        final int target = rowTarget * row_size;
+        final int source = rowSource * row_size;
+        if (doubles != null) {
+            final double s = Matrix.doubleValue(scale);
+            for (int col = 0; col < row_size; col++) {
+                doubles[target + col] += s * doubles[source + col];
+            }
+            return;
+        }
+        final Scalar factor = scale instanceof DoubleScalar ? new BigRationalScalar(scale) : scale;
+        ScalarAccumulator acc = new ScalarAccumulator();
+        for (int col = 0; col < row_size; col++) {
+            Scalar sourceValue = values.get(source + col);
+            if (!sourceValue.equals(0)) {
+                values.set(target + col, acc.set(values.get(target + col)).addProduct(factor, sourceValue).toScalar());
+            }
+        }
+    }
+
+    // works on the copy, so it takes one like a write
+    public Scalar dotRows(int row1, int row2) {
+        checkRow(row1);
+        checkRow(row2);
+        own();
+        final int a = row1 * row_size;
+        final int b = row2 * row_size;
+        if (doubles != null) {
+            double sum = 0;
+            for (int col = 0; col < row_size; col++) {
+                sum += doubles[a + col] * doubles[b + col];
+            }
+            return new DoubleScalar(sum);
+        }
+        ScalarAccumulator sum = new ScalarAccumulator();
+        for (int col = 0; col < row_size; col++) {
+            sum.addProduct(values.get(a + col), values.get(b + col));
+        }
+        return sum.toScalar();
+    }
+
+    public Matrix build() {
+        if (source == null) {
+            source = doubles != null
+                    ? new Matrix(doubles, row_size, col_size)
+                    : new Matrix(values, row_size, col_size);
+            doubles = null;
+            values = null;
+        }
+        return source;
+    }
+}
@@ -1,30 +1,42 @@
 package AbstractSyntaxTree;
 
-import Utilities.RowOperation;
-
-import java.util.List;
+import Utilities.LU;
+import Utilities.RowOperationLog;
 
 public final class RowReductionResult implements Value {
     private final Matrix original;
     private final Matrix efResult;
     private final Matrix rrefResult;
     private final Scalar determinant;
-    private final List<RowOperation> efOperations;
-    private final List<RowOperation> rrefOperations;
+    private final RowOperationLog efOperations;
+    private final RowOperationLog rrefOperations;
+    private final LU lu;
+
+    public RowReductionResult(
+            Matrix original,
+            Matrix efResult,
+            Matrix rrefResult,
+            Scalar determinant,
+            RowOperationLog efOperations,
+            RowOperationLog rrefOperations) {
+        this(original, efResult, rrefResult, determinant, efOperations, rrefOperations, null);
+    }
 
     public RowReductionResult(
             Matrix original,
             Matrix efResult,
             Matrix rrefResult,
             Scalar determinant,
-            List<RowOperation> efOperations,
-            List<RowOperation> rrefOperations) {
+            RowOperationLog efOperations,
+            RowOperationLog rrefOperations,
+            LU lu) {
         this.original = original;
         this.efResult = efResult;
         this.rrefResult = rrefResult;
         this.determinant = determinant;
         this.efOperations = efOperations;
         this.rrefOperations = rrefOperations;
+        this.lu = lu;
     }
 
     public Matrix original() {
@@ -43,14 +55,18 @@ public final class RowReductionResult implements Value {
         return determinant;
     }
 
-    public List<RowOperation> efOperations() {
+    public RowOperationLog efOperations() {
         return efOperations;
     }
 
-    public List<RowOperation> rrefOperations() {
+    public RowOperationLog rrefOperations() {
         return rrefOperations;
     }
 
+    public LU lu() {
+        return lu;
+    }
+
     @Override
     public String print() {
         return original.print();
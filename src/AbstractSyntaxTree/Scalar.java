@@ -2,7 +2,7 @@ package AbstractSyntaxTree;
 
 import org.apache.commons.math3.fraction.Fraction;
 
-public sealed interface Scalar extends Value permits DoubleScalar, FractionScalar{
+public sealed interface Scalar extends Value permits DoubleScalar, FractionScalar, BigRationalScalar {
 
     public Scalar add(Scalar other);
 
@@ -0,0 +1,187 @@
+package AbstractSyntaxTree;
+
+import java.math.BigInteger;
+
+// A mutable exact sum for inner loops. Terms are folded into a long numerator and denominator without allocating,
+// and only move to BigInteger when a long operation overflows. A double operand switches the accumulator over to
+// ordinary Scalar arithmetic, so results match what chained add/multiply calls would give.
+public final class ScalarAccumulator {
+    // the denominator is always positive; bigNum and bigDen are null while the sum is num / den
+    private long num = 0, den = 1;
+    private BigInteger bigNum, bigDen;
+    private Scalar inexact;
+
+    public ScalarAccumulator reset() {
+        num = 0;
+        den = 1;
+        bigNum = null;
+        bigDen = null;
+        inexact = null;
+        return this;
+    }
+
+    public ScalarAccumulator set(Scalar s) {
+        reset();
+        if (s instanceof DoubleScalar) {
+            inexact = s;
+        } else if (fitsLong(s)) {
+            num = numerator(s);
+            den = denominator(s);
+        } else {
+            bigNum = bigNumerator(s);
+            bigDen = bigDenominator(s);
+        }
+        return this;
+    }
+
+    // this += a * b
+    public ScalarAccumulator addProduct(Scalar a, Scalar b) {
+        if (inexact != null || a instanceof DoubleScalar || b instanceof DoubleScalar) {
+            inexact = toScalar().add(a.multiply(b));
+            return this;
+        }
+        if (bigNum == null && fitsLong(a) && fitsLong(b)) {
+            try {
+                addLong(
+                        Math.multiplyExact(numerator(a), numerator(b)),
+                        Math.multiplyExact(denominator(a), denominator(b))
+                );
+                return this;
+            } catch (ArithmeticException ignored) {
+                // fall through to the BigInteger path
+            }
+        }
+        addBig(
+                bigNumerator(a).multiply(bigNumerator(b)),
+                bigDenominator(a).multiply(bigDenominator(b))
+        );
+        return this;
+    }
+
+    // this *= s
+    public ScalarAccumulator multiply(Scalar s) {
+        if (inexact != null || s instanceof DoubleScalar) {
+            inexact = toScalar().multiply(s);
+            return this;
+        }
+        if (bigNum == null && fitsLong(s)) {
+            try {
+                final long n = Math.multiplyExact(num, numerator(s));
+                den = Math.multiplyExact(den, denominator(s));
+                num = n;
+                return this;
+            } catch (ArithmeticException ignored) {
+                // fall through to the BigInteger path
+            }
+        }
+        bigNum = currentNumerator().multiply(bigNumerator(s));
+        bigDen = currentDenominator().multiply(bigDenominator(s));
+        normalize();
+        return this;
+    }
+
+    // the sum in lowest terms, as a FractionScalar whenever it fits in one
+    public Scalar toScalar() {
+        if (inexact != null) {
+            return inexact;
+        }
+        if (bigNum != null) {
+            return BigRationalScalar.valueOf(bigNum, bigDen);
+        }
+        final long gcd = gcd(num, den);
+        final long n = num / gcd;
+        final long d = den / gcd;
+        if (n >= Integer.MIN_VALUE && n <= Integer.MAX_VALUE && d <= Integer.MAX_VALUE) {
+            return new FractionScalar((int) n, (int) d);
+        }
+        return new BigRationalScalar(n, d);
+    }
+
+    // the long path never takes a gcd; values are reduced when they overflow into the BigInteger path
+    private void addLong(long n, long d) {
+        if (d == den) {
+            num = Math.addExact(num, n);
+            return;
+        }
+        final long sum = Math.addExact(Math.multiplyExact(num, d), Math.multiplyExact(n, den));
+        den = Math.multiplyExact(den, d);
+        num = sum;
+    }
+
+    private void addBig(BigInteger n, BigInteger d) {
+        BigInteger numerator = currentNumerator();
+        BigInteger denominator = currentDenominator();
+        bigNum = numerator.multiply(d).add(n.multiply(denominator));
+        bigDen = denominator.multiply(d);
+        normalize();
+    }
+
+    // reduce a BigInteger sum, and drop back to the long path when it fits
+    private void normalize() {
+        BigInteger gcd = bigNum.gcd(bigDen);
+        if (bigDen.signum() < 0) {
+            gcd = gcd.negate();
+        }
+        bigNum = bigNum.divide(gcd);
+        bigDen = bigDen.divide(gcd);
+        if (bigNum.bitLength() < Long.SIZE && bigDen.bitLength() < Long.SIZE) {
+            num = bigNum.longValue();
+            den = bigDen.longValue();
+            bigNum = null;
+            bigDen = null;
+        }
+    }
+
+    private BigInteger currentNumerator() {
+        return bigNum != null ? bigNum : BigInteger.valueOf(num);
+    }
+
+    private BigInteger currentDenominator() {
+        return bigDen != null ? bigDen : BigInteger.valueOf(den);
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return Math.abs(a);
+    }
+
+    private static boolean fitsLong(Scalar s) {
+        return !(s instanceof BigRationalScalar b) || !b.isBig();
+    }
+
+    private static long numerator(Scalar s) {
+        return switch (s) {
+            case FractionScalar f -> f.getNumerator();
+            case BigRationalScalar b -> b.longNumerator();
+            case DoubleScalar d -> throw new IllegalStateException("A double has no exact numerator.");
+        };
+    }
+
+    private static long denominator(Scalar s) {
+        return switch (s) {
+            case FractionScalar f -> f.getDenominator();
+            case BigRationalScalar b -> b.longDenominator();
+            case DoubleScalar d -> throw new IllegalStateException("A double has no exact denominator.");
+        };
+    }
+
+    private static BigInteger bigNumerator(Scalar s) {
+        return switch (s) {
+            case FractionScalar f -> BigInteger.valueOf(f.getNumerator());
+            case BigRationalScalar b -> b.bigNumerator();
+            case DoubleScalar d -> throw new IllegalStateException("A double has no exact numerator.");
+        };
+    }
+
+    private static BigInteger bigDenominator(Scalar s) {
+        return switch (s) {
+            case FractionScalar f -> BigInteger.valueOf(f.getDenominator());
+            case BigRationalScalar b -> b.bigDenominator();
+            case DoubleScalar d -> throw new IllegalStateException("A double has no exact denominator.");
+        };
+    }
+}
@@ -0,0 +1,20 @@
+package AbstractSyntaxTree;
+
+// a quoted string argument, such as a file name
+public final class Text implements Value {
+
+    String value;
+
+    public Text(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    @Override
+    public String print() {
+        return "\"" + value + "\"";
+    }
+}
@@ -1,5 +1,5 @@
 package AbstractSyntaxTree;
 
-public sealed interface Value permits Scalar, Matrix, RowReductionResult, Vector, VectorList, Boolean {
+public sealed interface Value permits Scalar, Matrix, RowReductionResult, Vector, VectorList, Boolean, Text {
     public abstract String print();
 }
@@ -8,6 +8,15 @@ public final class Vector extends Matrix implements Value {
         super(values, 1, values.size());
     }
 
+    public Vector(double[] values) {
+        super(values, 1, values.length);
+    }
+
+    // shares the storage of a matrix with a single column
+    Vector(Matrix column) {
+        super(column);
+    }
+
     public int getDimension() {
         return values.size();
     }
@@ -39,20 +48,23 @@ public final class Vector extends Matrix implements Value {
     }
 
     public Scalar dot(Vector other) {
-        boolean isFraction = isFractionMatrix();
         if (getDimension() != other.getDimension()) {
             throw new IllegalArgumentException("Vectors must have the same dimension to perform dot product.");
         }
-        Scalar sum;
-        if (isFraction) {
-            sum = new FractionScalar(0);
-        } else {
-            sum = new DoubleScalar(0);
+        if (isDoubleMatrix() && other.isDoubleMatrix()) {
+            final double[] a = doubleValues();
+            final double[] b = other.doubleValues();
+            double sum = 0;
+            for (int i = 0; i < a.length; i++) {
+                sum += a[i] * b[i];
+            }
+            return new DoubleScalar(sum);
         }
+        ScalarAccumulator sum = new ScalarAccumulator();
         for (int i = 0; i < getDimension(); i++) {
-            sum = sum.add(get(i).multiply(other.get(i)));
+            sum.addProduct(get(i), other.get(i));
         }
-        return sum;
+        return sum.toScalar();
     }
 
     public Vector project(Vector other) {
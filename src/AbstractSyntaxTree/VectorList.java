@@ -45,13 +45,7 @@ public final class VectorList implements Value {
     }
 
     public Matrix toMatrix() {
-        List<Scalar> values = new ArrayList<Scalar>();
-        for (int n = 0; n < vectorDimension; n++) {
-            for (int m = 0; m < size(); m++) {
-                values.add(getVector(m).get(n));
-            }
-        }
-        return new Matrix(values, size(), vectorDimension);
+        return new Matrix(this);
     }
 
     private List<Integer> findMaxLengths() {
@@ -51,164 +51,258 @@ public class Algorithms {
 //        System.out.println(nullSpace(m).print());
 //    }
 
+    private static final double EPSILON = Math.pow(10, -9);
+
+    // shared by every entry point below; weighted by matrix entries held
+    private static final ResultCache RESULTS = new ResultCache(1 << 22);
+
+    public static ResultCache resultCache() {
+        return RESULTS;
+    }
+
     public static Matrix rowSwap(Matrix m, int r1, int r2) {
-        if (r1 < 0 || r1 >= m.colSize()) {
-            throw new IndexOutOfBoundsException(
-                    String.format("Row index %d out of bounds for matrix with %d rows.", r1, m.colSize())
-            );
-        }
-        if (r2 < 0 || r2 >= m.colSize()) {
-            throw new IndexOutOfBoundsException(
-                    String.format("Row index %d out of bounds for matrix with %d rows.", r2, m.colSize())
-            );
-        }
-        Matrix ret = new Matrix(m);
-        for (int col = 0; col < m.rowSize(); col++) {
-            ret.set(r1, col, m.get(r2, col));
-            ret.set(r2, col, m.get(r1, col));
-        }
-        return ret;
+        return m.withRowsSwapped(r1, r2);
     }
 
     public static Matrix rowScale(Matrix m, int row, Scalar scale) {
-        if (row < 0 || row >= m.colSize()) {
-            throw new IndexOutOfBoundsException(
-                    String.format("Row index %d out of bounds for matrix with %d rows.", row, m.colSize())
-            );
-        }
         if (scale.equals(0)) {
             throw new IllegalArgumentException("Cannot scale a row by zero.");
         }
-        Matrix ret = new Matrix(m);
-        for (int col = 0; col < m.rowSize(); col++) {
-            ret.set(row, col, scale.multiply(m.get(row, col)));
-        }
-        return ret;
+        return m.withRowScaled(row, scale);
     }
 
     public static Matrix rowReplace(Matrix m, int rowTarget, int rowSource, Scalar scale) {
-        if (rowTarget < 0 || rowTarget >= m.colSize()) {
-            throw new IndexOutOfBoundsException(
-                    String.format("Row index %d out of bounds for matrix with %d rows.", rowTarget, m.colSize())
-            );
-        }
-        if (rowSource < 0 || rowSource >= m.colSize()) {
-            throw new IndexOutOfBoundsException(
-                    String.format("Row index %d out of bounds for matrix with %d rows.", rowSource, m.colSize())
-            );
-        }
-        Matrix ret = new Matrix(m);
-        for (int col = 0; col < m.rowSize(); col++) {
-            Scalar a = m.get(rowTarget, col);
-            Scalar b = scale.multiply((m.get(rowSource, col)));
-            ret.set(rowTarget, col, m.get(rowTarget, col).add(scale.multiply(m.get(rowSource, col))));
-        }
-        return ret;
+        return m.withRowAdded(rowTarget, rowSource, scale);
     }
 
     public static RowReductionResult ef(Matrix m) {
-        Matrix ret = new Matrix(m);
-        Scalar determinant;
-        List<RowOperation> rowOperations = new ArrayList<>();
-        boolean isFraction = m.isFractionMatrix();
-        if (isFraction) {
-            determinant = new FractionScalar(1);
-        } else {
-            determinant = new DoubleScalar(1);
-        }
-        do {
-            // check if all rows have unique pivot columns
-            Map<Integer, Integer> pivotRowMap = new HashMap<>();
-            Integer rowReplaceTarget = null, rowReplaceSource = null, rowReplaceColumn = null;
-            for (int row = 0; row < m.colSize(); row++) {
-                int pivotPos = pivotPos(ret, row);
-                if (pivotPos == m.rowSize()) {
-                    continue; // ignore all-zero rows
-                }
-                if (pivotRowMap.containsKey(pivotPos)) {
-                    rowReplaceTarget = row;
-                    rowReplaceSource = pivotRowMap.get(pivotPos);
-                    rowReplaceColumn = pivotPos;
-                    break;
-                } else {
-                    pivotRowMap.put(pivotPos, row);
+        return ef(m, true);
+    }
+
+    // record says whether the row operations are wanted too; the queries below only look at the echelon form
+    private static RowReductionResult ef(Matrix m, boolean record) {
+        return ef(new RowReductionResult(m, null, null, null, null, null), record);
+    }
+
+    private static RowReductionResult efOf(Matrix m, boolean record) {
+        RowReductionResult structured = efOfStructure(m, record);
+        if (structured != null) {
+            return structured;
+        }
+        if (m.isBandMatrix()) {
+            BandElimination result = BandElimination.reduce(m, false, record);
+            if (result != null) {
+                return new RowReductionResult(
+                        m,
+                        result.efResult(),
+                        null,
+                        result.determinant(),
+                        result.efOperations(),
+                        null,
+                        result.lu());
+            }
+        }
+        // a singular band matrix is reduced like any other sparse one
+        if (m.isSparseMatrix() || m.isBandMatrix()) {
+            SparseElimination result = SparseElimination.reduce(m.isBandMatrix() ? m.toSparseMatrix() : m, false, record);
+            return new RowReductionResult(
+                    m,
+                    result.efResult(),
+                    null,
+                    result.determinant(),
+                    result.efOperations(),
+                    null);
+        }
+        if (m.isDoubleMatrix()) {
+            return efDouble(m, record);
+        }
+        FractionFreeElimination result = FractionFreeElimination.reduce(m, false, record);
+        return new RowReductionResult(
+                m,
+                result.efResult(),
+                null,
+                result.determinant(),
+                result.efOperations(),
+                null);
+    }
+
+    // an upper triangular matrix with no zero on its diagonal is already in echelon form, and a permutation matrix
+    // is a row swap per column away from the identity; these are the forms elimination would reach too
+    private static RowReductionResult efOfStructure(Matrix m, boolean record) {
+        if (m.isUpperTriangular()) {
+            for (int i = 0; i < m.colSize(); i++) {
+                if (m.get(i, i).equals(0)) {
+                    return null;
                 }
             }
-            // two rows had a matching pivot column; perform a row replacement
-            if (rowReplaceColumn != null) {
-                Scalar scale = ret.get(rowReplaceTarget, rowReplaceColumn)
-                        .divide(ret.get(rowReplaceSource, rowReplaceColumn))
-                        .negate();
-                RowOperation rowOp = new RowReplace(rowReplaceTarget, rowReplaceSource, scale);
-                rowOperations.add(rowOp);
-                ret = rowOp.apply(ret);
-            } else {
-                // do the sorting; todo do better than n^2
-                int[] pivotColAtRow = new int[m.colSize()];
-                for (int row = 0; row < m.colSize(); row++) {
-                    pivotColAtRow[row] = pivotPos(ret, row);
+            return new RowReductionResult(
+                    m, m, null, LU.diagonalProduct(m), record ? new RowOperationLog() : null, null);
+        }
+        if (!m.isPermutationMatrix()) {
+            return null;
+        }
+        final int[] columns = m.permutation();
+        final int n = columns.length;
+        // at[position] is the row now at that position; rowOf[col] is the row with its one in col
+        int[] at = new int[n];
+        int[] where = new int[n];
+        int[] rowOf = new int[n];
+        for (int row = 0; row < n; row++) {
+            at[row] = row;
+            where[row] = row;
+            rowOf[columns[row]] = row;
+        }
+        RowOperationLog rowOperations = new RowOperationLog(record);
+        boolean negative = false;
+        for (int col = 0; col < n; col++) {
+            final int from = where[rowOf[col]];
+            if (from != col) {
+                rowOperations.swap(col, from);
+                negative = !negative;
+                final int displaced = at[col];
+                at[col] = rowOf[col];
+                at[from] = displaced;
+                where[rowOf[col]] = col;
+                where[displaced] = from;
+            }
+        }
+        final Matrix identity = new Matrix(n);
+        return m.isDoubleMatrix()
+                ? new RowReductionResult(m, identity.toDoubleMatrix(), null, new DoubleScalar(negative ? -1 : 1),
+                        record ? rowOperations : null, null)
+                : new RowReductionResult(m, identity, null, new FractionScalar(negative ? -1 : 1),
+                        record ? rowOperations : null, null);
+    }
+
+    // partial pivoting on the raw array: the largest remaining entry in each column becomes the pivot
+    private static RowReductionResult efDouble(Matrix m, boolean record) {
+        MatrixBuilder ret = new MatrixBuilder(m);
+        final double[] a = ret.doubleValues();
+        final int rows = m.colSize();
+        final int cols = m.rowSize();
+        RowOperationLog rowOperations = new RowOperationLog(record);
+        double determinant = 1;
+        int pivotRow = 0;
+        for (int col = 0; col < cols && pivotRow < rows; col++) {
+            int best = pivotRow;
+            for (int row = pivotRow + 1; row < rows; row++) {
+                if (Math.abs(a[row * cols + col]) > Math.abs(a[best * cols + col])) {
+                    best = row;
                 }
-                for (int row = 0; row < m.colSize(); row++) {
-                    for (int swapRow = row; swapRow > 0; swapRow--) {
-                        if (pivotColAtRow[swapRow - 1] > pivotColAtRow[swapRow]) {
-                            RowOperation rowOp = new RowSwap(swapRow - 1, swapRow);
-                            rowOperations.add(rowOp);
-                            ret = rowOp.apply(ret);
-                            determinant = determinant.negate();
-                            int temp = pivotColAtRow[swapRow - 1];
-                            pivotColAtRow[swapRow - 1] = pivotColAtRow[swapRow];
-                            pivotColAtRow[swapRow] = temp;
-                        }
-                    }
+            }
+            if (Math.abs(a[best * cols + col]) < EPSILON) {
+                continue;
+            }
+            if (best != pivotRow) {
+                rowOperations.swap(pivotRow, best);
+                ret.swapRows(pivotRow, best);
+                determinant = -determinant;
+            }
+            final int source = pivotRow * cols;
+            final double pivot = a[source + col];
+            for (int row = pivotRow + 1; row < rows; row++) {
+                final int target = row * cols;
+                final double factor = a[target + col] / pivot;
+                if (factor == 0) {
+                    continue;
                 }
-                if (m.colSize() == m.rowSize()) {
-                    Scalar diag;
-                    if (isFraction) {
-                        diag = new FractionScalar(1);
-                    } else {
-                        diag = new DoubleScalar(1);
-                    }
-                    for (int i = 0; i < m.colSize(); i++) {
-                        diag = diag.multiply(ret.get(i, i));
-                    }
-                    return new RowReductionResult(
-                            m,
-                            ret,
-                            null,
-                            determinant.multiply(diag),
-                            rowOperations,
-                            null);
+                rowOperations.replace(row, pivotRow, -factor);
+                a[target + col] = 0;
+                for (int c = col + 1; c < cols; c++) {
+                    a[target + c] -= factor * a[source + c];
                 }
-                return new RowReductionResult(
-                        m,
-                        ret,
-                        null,
-                        null,
-                        rowOperations,
-                        null);
             }
-        } while (true);
+            pivotRow++;
+        }
+        if (rows != cols) {
+            return new RowReductionResult(m, ret.build(), null, null, record ? rowOperations : null, null);
+        }
+        for (int i = 0; i < rows; i++) {
+            determinant *= a[i * cols + i];
+        }
+        return new RowReductionResult(
+                m, ret.build(), null, new DoubleScalar(determinant), record ? rowOperations : null, null);
     }
 
     public static RowReductionResult ef(RowReductionResult rrr) {
-        if (rrr.efResult() != null) {
+        return ef(rrr, true);
+    }
+
+    private static RowReductionResult ef(RowReductionResult rrr, boolean record) {
+        if (rrr.efResult() != null && (!record || rrr.efOperations() != null)) {
             return rrr;
         }
-        return ef(rrr.original());
+        rrr = RESULTS.lookup(rrr, record ? RowReductionResult::efOperations : RowReductionResult::efResult);
+        if (rrr.efResult() != null && (!record || rrr.efOperations() != null)) {
+            return rrr;
+        }
+        RowReductionResult efResult = efOf(rrr.original(), record);
+        return RESULTS.remember(new RowReductionResult(
+                rrr.original(),
+                efResult.efResult(),
+                rrr.rrefResult(),
+                efResult.determinant(),
+                efResult.efOperations(),
+                rrr.rrefOperations(),
+                rrr.lu() != null ? rrr.lu() : efResult.lu()));
     }
 
     public static RowReductionResult rref(Matrix m) {
-        return rref(ef(m));
+        return rref(new RowReductionResult(m, null, null, null, null, null));
     }
 
     public static RowReductionResult rref(RowReductionResult rrr) {
-        if (rrr.rrefResult() != null) {
+        return rref(rrr, true);
+    }
+
+    private static RowReductionResult rref(RowReductionResult rrr, boolean record) {
+        if (rrr.rrefResult() != null && (!record || rrr.rrefOperations() != null)) {
+            return rrr;
+        }
+        rrr = RESULTS.lookup(rrr, record ? RowReductionResult::rrefOperations : RowReductionResult::rrefResult);
+        if (rrr.rrefResult() != null && (!record || rrr.rrefOperations() != null)) {
             return rrr;
         }
-        rrr = ef(rrr);
+        if (rrr.original().isBandMatrix()) {
+            BandElimination result = BandElimination.reduce(rrr.original(), true, record);
+            if (result != null) {
+                return RESULTS.remember(new RowReductionResult(
+                        rrr.original(),
+                        result.efResult(),
+                        result.rrefResult(),
+                        result.determinant(),
+                        result.efOperations(),
+                        result.rrefOperations(),
+                        rrr.lu() != null ? rrr.lu() : result.lu()));
+            }
+        }
+        if (rrr.original().isSparseMatrix() || rrr.original().isBandMatrix()) {
+            final Matrix m = rrr.original();
+            SparseElimination result = SparseElimination.reduce(m.isBandMatrix() ? m.toSparseMatrix() : m, true, record);
+            return RESULTS.remember(new RowReductionResult(
+                    rrr.original(),
+                    result.efResult(),
+                    result.rrefResult(),
+                    result.determinant(),
+                    result.efOperations(),
+                    result.rrefOperations(),
+                    rrr.lu()));
+        }
+        if (!rrr.original().isDoubleMatrix()) {
+            FractionFreeElimination result = FractionFreeElimination.reduce(rrr.original(), true, record);
+            return RESULTS.remember(new RowReductionResult(
+                    rrr.original(),
+                    result.efResult(),
+                    result.rrefResult(),
+                    result.determinant(),
+                    result.efOperations(),
+                    result.rrefOperations(),
+                    rrr.lu()));
+        }
+        rrr = ef(rrr, record);
         Matrix m = rrr.original();
-        Matrix ret = new Matrix(rrr.efResult());
-        List<RowOperation> rrefOperations = new ArrayList<>();
+        MatrixBuilder ret = new MatrixBuilder(rrr.efResult());
+        RowOperationLog rrefOperations = new RowOperationLog(record);
         for (int row = 0; row < m.colSize(); row++) {
             // find the pivot column
             int pivotCol = 0;
@@ -220,24 +314,82 @@ public class Algorithms {
             }
             // normalize each row
             Scalar normalizingScalar = ret.get(row, pivotCol).reciprocal();
-            RowOperation rowOp = new RowScale(row, normalizingScalar);
-            rrefOperations.add(rowOp);
-            ret = rowOp.apply(ret);
+            rrefOperations.scale(row, normalizingScalar);
+            ret.scaleRow(row, normalizingScalar);
             // zero-out the column above the pivot
             for (int targetRow = row - 1; targetRow >= 0; targetRow--) {
                 Scalar targetScalar = ret.get(targetRow, pivotCol).negate();
-                rowOp = new RowReplace(targetRow, row, targetScalar);
-                rrefOperations.add(rowOp);
-                ret = rowOp.apply(ret);
+                if (targetScalar.equals(0)) {
+                    continue;
+                }
+                rrefOperations.replace(targetRow, row, targetScalar);
+                ret.addScaledRow(targetRow, row, targetScalar);
             }
         }
-        return new RowReductionResult(
+        return RESULTS.remember(new RowReductionResult(
                 m,
                 rrr.efResult(),
-                ret,
+                ret.build(),
                 rrr.determinant(),
                 rrr.efOperations(),
-                rrefOperations);
+                record ? rrefOperations : null,
+                rrr.lu()));
+    }
+
+    public static RowReductionResult lu(Matrix m) {
+        return lu(new RowReductionResult(m, null, null, null, null, null));
+    }
+
+    public static RowReductionResult lu(RowReductionResult rrr) {
+        if (rrr.lu() != null) {
+            return rrr;
+        }
+        rrr = RESULTS.lookup(rrr, RowReductionResult::lu);
+        if (rrr.lu() != null) {
+            return rrr;
+        }
+        LU lu = LU.factor(rrr.original());
+        return RESULTS.remember(new RowReductionResult(
+                rrr.original(),
+                rrr.efResult(),
+                rrr.rrefResult(),
+                rrr.determinant() != null ? rrr.determinant() : lu.determinant(),
+                rrr.efOperations(),
+                rrr.rrefOperations(),
+                lu));
+    }
+
+    // rrr with a Cholesky factorization for its LU when its matrix is symmetric positive definite, or with the LU
+    // it already has; otherwise unchanged, and left to the general routes
+    private static RowReductionResult cholesky(RowReductionResult rrr) {
+        if (rrr.lu() != null || !rrr.original().isSymmetric()) {
+            return rrr;
+        }
+        rrr = RESULTS.lookup(rrr, RowReductionResult::lu);
+        if (rrr.lu() != null) {
+            return rrr;
+        }
+        LU lu = LU.cholesky(rrr.original());
+        if (lu == null) {
+            return rrr;
+        }
+        return RESULTS.remember(new RowReductionResult(
+                rrr.original(),
+                rrr.efResult(),
+                rrr.rrefResult(),
+                rrr.determinant() != null ? rrr.determinant() : lu.determinant(),
+                rrr.efOperations(),
+                rrr.rrefOperations(),
+                lu));
+    }
+
+    public static Pair<Matrix, RowReductionResult> solve(Matrix m, Matrix b) {
+        return solve(lu(m), b);
+    }
+
+    public static Pair<Matrix, RowReductionResult> solve(RowReductionResult rrr, Matrix b) {
+        rrr = lu(rrr);
+        return new Pair<>(rrr.lu().solve(b), rrr);
     }
 
     private static int pivotPos(Matrix m, int row) {
@@ -246,45 +398,93 @@ public class Algorithms {
                     String.format("Row index %d out of bounds for matrix with %d rows.", row, m.colSize())
             );
         }
-        int zeroCount = 0;
-        for (int col = 0; col < m.rowSize(); col++) {
-            if (m.get(row, col).equals(0)) {
-                zeroCount++;
-            } else {
-                break;
-            }
+        return m.firstNonZero(row);
+    }
+
+    public static Pair<Scalar, RowReductionResult> determinant(Matrix m) {
+        return determinant(new RowReductionResult(m, null, null, null, null, null));
+    }
+
+    // a triangular matrix's determinant is the product of its diagonal, and a permutation's its sign, without
+    // reducing either
+    public static Pair<Scalar, RowReductionResult> determinant(RowReductionResult rrr) {
+        Matrix m = rrr.original();
+        if (m.rowSize() != m.colSize()) {
+            throw new IllegalArgumentException("Cannot take the determinant of a non-square matrix.");
+        }
+        if (rrr.determinant() == null && (m.isTriangular() || m.isPermutationMatrix())) {
+            rrr = new RowReductionResult(
+                    m,
+                    rrr.efResult(),
+                    rrr.rrefResult(),
+                    m.isTriangular() ? LU.diagonalProduct(m) : efOfStructure(m, false).determinant(),
+                    rrr.efOperations(),
+                    rrr.rrefOperations(),
+                    rrr.lu());
+        }
+        if (rrr.determinant() == null) {
+            rrr = m.isBandMatrix() ? lu(rrr) : cholesky(rrr);
+        }
+        if (rrr.determinant() == null) {
+            rrr = ef(rrr, false);
         }
-        return zeroCount;
+        return new Pair<>(rrr.determinant(), rrr);
     }
 
     public static Pair<Matrix, RowReductionResult> inverse(Matrix m) {
-        return inverse(rref(m));
+        return inverse(new RowReductionResult(m, null, null, null, null, null));
     }
 
     public static Pair<Matrix, RowReductionResult> inverse(RowReductionResult rrr) {
-        rrr = rref(rrr);
         if (rrr.original().colSize() != rrr.original().rowSize()) {
             throw new IllegalArgumentException("Cannot take inverse of a non-square matrix.");
         }
-        if (rrr.determinant().equals(0)) {
-            throw new IllegalStateException("Matrix is not invertible.");
+        if (rrr.original().isBandMatrix() && (long) rrr.original().rowSize() * rrr.original().rowSize() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format(
+                    "The inverse of a %dx%d band matrix is dense and too large to hold.",
+                    rrr.original().rowSize(),
+                    rrr.original().rowSize()
+            ));
+        }
+        Matrix ret = RESULTS.inverse(rrr.original());
+        if (ret != null) {
+            return new Pair<>(ret, rrr);
+        }
+        // the inverse of a permutation is its transpose; a triangular matrix is solved against the identity by
+        // substitution alone, since it is its own LU factorization
+        if (rrr.original().isPermutationMatrix()) {
+            ret = rrr.original().transpose();
+            RESULTS.rememberInverse(rrr.original(), ret);
+            return new Pair<>(ret, rrr);
+        }
+        rrr = cholesky(rrr);
+        if (rrr.lu() == null && !rrr.original().isDoubleMatrix() && !rrr.original().isTriangular()) {
+            ret = FractionFreeElimination.inverse(rrr.original());
+            if (ret == null) {
+                throw new IllegalStateException("Matrix is not invertible.");
+            }
+            RESULTS.rememberInverse(rrr.original(), ret);
+            return new Pair<>(ret, rrr);
         }
-        Matrix ret = new Matrix(rrr.original().rowSize());
-        for (RowOperation rowOp : rrr.efOperations()) {
-            ret = rowOp.apply(ret);
+        rrr = lu(rrr);
+        if (rrr.lu().isSingular()) {
+            throw new IllegalStateException("Matrix is not invertible.");
         }
-        for (RowOperation rowOp : rrr.rrefOperations()) {
-            ret = rowOp.apply(ret);
+        Matrix identity = new Matrix(rrr.original().rowSize());
+        if (rrr.original().isDoubleMatrix()) {
+            identity = identity.toDoubleMatrix();
         }
+        ret = rrr.lu().solve(identity);
+        RESULTS.rememberInverse(rrr.original(), ret);
         return new Pair<>(ret, rrr);
     }
 
     public static Pair<Integer, RowReductionResult> rank(Matrix m) {
-        return rank(ef(m));
+        return rank(ef(m, false));
     }
 
     public static Pair<Integer, RowReductionResult> rank(RowReductionResult rrr) {
-        rrr = ef(rrr);
+        rrr = ef(rrr, false);
         Matrix m = rrr.original();
         int row;
         for (row = 0; row < m.colSize(); row++) {
@@ -296,7 +496,7 @@ public class Algorithms {
     }
 
     public static Pair<Integer, RowReductionResult> nullity(Matrix m) {
-        return nullity(ef(m));
+        return nullity(ef(m, false));
     }
 
     public static Pair<Integer, RowReductionResult> nullity(RowReductionResult rrr) {
@@ -305,12 +505,21 @@ public class Algorithms {
     }
 
     public static Pair<java.lang.Boolean, RowReductionResult> isConsistent(Matrix m) {
-        return isConsistent(ef(m));
+        return isConsistent(ef(m, false));
     }
 
     public static Pair<java.lang.Boolean, RowReductionResult> isConsistent(RowReductionResult rrr) {
-        rrr = ef(rrr);
         Matrix m = rrr.original();
+        // a system whose coefficients are symmetric positive definite, or otherwise known to be invertible, has a
+        // solution whatever its right-hand side
+        if (rrr.efResult() == null && m.colSize() > 0 && m.rowSize() == m.colSize() + 1) {
+            Matrix coefficients = m.partitionColumns(m.colSize()).getFirst();
+            LU lu = cholesky(new RowReductionResult(coefficients, null, null, null, null, null)).lu();
+            if (lu != null && !lu.isSingular()) {
+                return new Pair<>(true, rrr);
+            }
+        }
+        rrr = ef(rrr, false);
         for (int row = 0; row < m.colSize(); row++) {
             if (pivotPos(rrr.efResult(), row) == m.rowSize() - 1) {
                 return new Pair<>(false, rrr);
@@ -320,11 +529,11 @@ public class Algorithms {
     }
 
     public static Pair<VectorList, RowReductionResult> columnSpace(Matrix m) {
-        return columnSpace(ef(m));
+        return columnSpace(ef(m, false));
     }
 
     public static Pair<VectorList, RowReductionResult> columnSpace(RowReductionResult rrr) {
-        rrr = ef(rrr);
+        rrr = ef(rrr, false);
         Matrix m = rrr.original();
         List<Vector> includedColumns = new ArrayList<>();
         for (int row = 0; row < m.colSize(); row++) {
@@ -338,11 +547,11 @@ public class Algorithms {
     }
 
     public static Pair<VectorList, RowReductionResult> rowSpace(Matrix m) {
-        return rowSpace(ef(m));
+        return rowSpace(ef(m, false));
     }
 
     public static Pair<VectorList, RowReductionResult> rowSpace(RowReductionResult rrr) {
-        rrr = ef(rrr);
+        rrr = ef(rrr, false);
         Matrix m = rrr.original();
         List<Vector> includedRows = new ArrayList<>();
         for (int row = 0; row < m.colSize(); row++) {
@@ -356,18 +565,20 @@ public class Algorithms {
     }
 
     public static Pair<VectorList, RowReductionResult> nullSpace(Matrix m) {
-        return nullSpace(ef(m));
+        return nullSpace(ef(m, false));
     }
 
     public static Pair<VectorList, RowReductionResult> nullSpace(RowReductionResult rrr) {
-        rrr = ef(rrr);
+        if (rrr.original().isSparseMatrix() || rrr.original().isBandMatrix()) {
+            rrr = rref(rrr, false);
+            return new Pair<>(nullSpaceOfRref(rrr.rrefResult()), rrr);
+        }
+        rrr = ef(rrr, false);
         Matrix m = rrr.original();
         Matrix aug = m.transpose();
-        List<RowOperation> ops = ef(aug).efOperations();
-        aug = aug.augmentColumns(new Matrix(m.rowSize()));
-        for (RowOperation op : ops) {
-            aug = op.apply(aug);
-        }
+        // the operations that reduce the transpose, replayed in one pass onto it augmented with the identity
+        RowOperationLog ops = ef(aug).efOperations();
+        aug = ops.apply(aug.augmentColumns(new Matrix(m.rowSize())));
         Pair<Matrix, Matrix> part = aug.partitionColumns(m.colSize());
         List<Vector> nullBasis = new ArrayList<>();
         for (int row = aug.colSize() - 1; row >= 0; row--) {
@@ -380,6 +591,39 @@ public class Algorithms {
         return new Pair<>(new VectorList(nullBasis), rrr);
     }
 
+    // one basis vector per free column f: x_f = 1, each pivot variable set by its row of the RREF, the rest zero.
+    // This reads a single entry per pivot row and free column, where the transpose reduction above would fill in
+    private static VectorList nullSpaceOfRref(Matrix rref) {
+        final int cols = rref.rowSize();
+        int[] pivotColumns = new int[Math.min(rref.colSize(), cols)];
+        boolean[] isPivot = new boolean[cols];
+        int rank = 0;
+        while (rank < pivotColumns.length) {
+            final int col = rref.firstNonZero(rank);
+            if (col == cols) {
+                break;
+            }
+            pivotColumns[rank++] = col;
+            isPivot[col] = true;
+        }
+        List<Vector> nullBasis = new ArrayList<>();
+        for (int free = 0; free < cols; free++) {
+            if (isPivot[free]) {
+                continue;
+            }
+            double[] basis = new double[cols];
+            basis[free] = 1;
+            for (int k = 0; k < rank && pivotColumns[k] < free; k++) {
+                final double entry = ((DoubleScalar) rref.get(k, free)).value;
+                if (entry != 0) {
+                    basis[pivotColumns[k]] = -entry;
+                }
+            }
+            nullBasis.add(new Matrix(basis, 1, cols).asVector());
+        }
+        return new VectorList(nullBasis);
+    }
+
     public static boolean isLinearlyIndependent(VectorList vs) {
         if (vs.size() == 0) {
             return false;
@@ -387,7 +631,7 @@ public class Algorithms {
         if (vs.size() > vs.getVectorDimension()) {
             return false; // more vectors than dimensions
         }
-        Vector r = Algorithms.ef(new Matrix(vs)).efResult().getRowVector(vs.size() - 1);
+        Vector r = Algorithms.ef(new Matrix(vs), false).efResult().getRowVector(vs.size() - 1);
         return !r.isZeroVector();
     }
 
@@ -407,7 +651,7 @@ public class Algorithms {
         }
         Matrix mat = new Matrix(vs);
         mat = mat.augmentColumns(u);
-        final Matrix efMat = ef(mat).efResult();
+        final Matrix efMat = ef(mat, false).efResult();
         return isConsistent(efMat).getFirst();
     }
 
@@ -433,58 +677,78 @@ public class Algorithms {
     }
 
     public static VectorList gramSchmidt(VectorList vs) {
-        List<Vector> vl = new ArrayList<Vector>();
+        if (vs.size() == 0) {
+            return new VectorList(new ArrayList<>());
+        }
+        // one vector per row, orthogonalized in place against the rows above it
+        List<Scalar> values = new ArrayList<>(vs.size() * vs.getVectorDimension());
+        for (int i = 0; i < vs.size(); i++) {
+            for (int j = 0; j < vs.getVectorDimension(); j++) {
+                values.add(vs.getVector(i).get(j));
+            }
+        }
+        MatrixBuilder basis = new MatrixBuilder(new Matrix(values, vs.getVectorDimension(), vs.size()));
+        Scalar[] norms = new Scalar[vs.size()];
         for (int i = 0; i < vs.size(); i++) {
-            Vector vi = vs.getVector(i);
             for (int j = 0; j < i; j++) {
-                Scalar num = vs.getVector(i).dot(vl.get(j));
-                Scalar denom = vl.get(j).dot(vl.get(j));
-                Scalar div = num.divide(denom);
-                Vector sub = div.multiply(vl.get(j)).asVector();
-                vi = vi.subtract(sub).asVector();
+                basis.addScaledRow(i, j, basis.dotRows(i, j).divide(norms[j]).negate());
             }
-            vl.add(vi);
+            norms[i] = basis.dotRows(i, i);
+        }
+        Matrix orthogonal = basis.build();
+        List<Vector> vl = new ArrayList<Vector>();
+        for (int i = 0; i < vs.size(); i++) {
+            vl.add(orthogonal.getRowVector(i));
         }
         return new VectorList(vl);
     }
 
     public static Pair<Matrix, Matrix> QRFactorize(Matrix A) {
-        VectorList W = columnSpace(A).getFirst();
-        if (W.size() != A.rowSize()) {
-            throw new IllegalArgumentException("The columns of A must form a basis for Col A");
+        Pair<Matrix, Matrix> cached = RESULTS.qr(A);
+        if (cached != null) {
+            return cached;
         }
-        VectorList U = gramSchmidt(W).normalize();
-        List<Vector> r = new ArrayList<Vector>();
-        for (int k = 0; k < W.size(); k++) {
-            List<Vector> uk = new ArrayList<Vector>();
-            for (int j = 0; j <= k; j++) {
-                uk.add(U.getVector(j));
-            }
-            Vector v = W.getVector(k);
-            Matrix Ukx = (new VectorList(uk)).toMatrix().augmentColumns(v);
-            Matrix rkm = rref(Ukx).rrefResult();
-            Vector rk = rkm.partitionColumns(k+1).getSecond().asVector();
-            r.add(rk);
+        QR qr = QR.factor(A);
+        if (!qr.isFullRank()) {
+            throw new IllegalArgumentException("The columns of A must form a basis for Col A");
         }
-        Matrix Q = U.toMatrix();
-        Matrix R = (new VectorList(r)).toMatrix();
-        return new Pair<>(Q, R);
+        Pair<Matrix, Matrix> ret = new Pair<>(qr.q(), qr.r());
+        RESULTS.rememberQR(A, ret);
+        return ret;
     }
 
     public static Matrix QRAlgorithm(Matrix A) {
-        Matrix Ak = A.toDoubleMatrix();
-        while (!Ak.isUpperTriangular(Math.pow(10, -6))) {
-            Pair<Matrix, Matrix> QR = QRFactorize(Ak);
-            Matrix Q = QR.getFirst();
-            Matrix R = QR.getSecond();
-            Ak = R.multiply(Q);
+        return schur(A).t();
+    }
+
+    private static Schur schur(Matrix A) {
+        Schur schur = RESULTS.schur(A);
+        if (schur == null) {
+            schur = Schur.factor(A);
+            RESULTS.rememberSchur(A, schur);
+        }
+        return schur;
+    }
+
+    // a vector of the eigenvalues, or an n x 2 matrix of real and imaginary parts when some are complex; these are
+    // approximations, so they stay doubles rather than being guessed back into fractions
+    public static Matrix eigenvalues(Matrix A) {
+        Schur schur = schur(A);
+        double[] real = schur.realEigenvalues();
+        if (!schur.hasComplexEigenvalues()) {
+            return new Vector(real);
+        }
+        double[] imaginary = schur.imaginaryEigenvalues();
+        double[] values = new double[2 * real.length];
+        for (int i = 0; i < real.length; i++) {
+            values[2 * i] = real[i];
+            values[2 * i + 1] = imaginary[i];
         }
-        Ak = Ak.toFractionMatrix();
-        return Ak;
+        return new Matrix(values, 2, real.length);
     }
 
     public static VectorList eigenspace(Matrix A, Scalar lambda) {
-        return nullSpace(A.subtract(lambda.multiply(new Matrix(A.rowSize())))).getFirst();
+        return nullSpace(A.subtract(Matrix.scaledIdentity(A.rowSize(), lambda))).getFirst();
     }
 
     public static boolean isEigenVector(Vector v, Matrix A) {
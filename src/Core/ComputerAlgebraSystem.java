@@ -1,5 +1,7 @@
 package Core;
 
+import Parser.LiteralMode;
+
 public class ComputerAlgebraSystem {
     public static void main(String[] args) {
         System.out.println("--------------------");
@@ -12,6 +14,13 @@ public class ComputerAlgebraSystem {
         System.out.println("\t`RREF(A)` calculates reduced echelon form of A");
         System.out.println("\t`A * B` multiplies matrices or vectors A and B (vector multiplication uses the dot product)");
         System.out.println("Enjoy!");
-        Repl.repl();
+        // `--literals=binary64` reads decimals like 0.1 as doubles instead of exact fractions
+        LiteralMode mode = LiteralMode.EXACT;
+        for (String arg : args) {
+            if (arg.startsWith("--literals=")) {
+                mode = LiteralMode.valueOf(arg.substring("--literals=".length()).toUpperCase());
+            }
+        }
+        Repl.repl(mode);
     }
 }
@@ -3,6 +3,7 @@ package Core;
 import AbstractSyntaxTree.*;
 import Interpreter.LinearInterpreter;
 import Parser.LinearParser;
+import Parser.LiteralMode;
 import org.jparsec.Parser;
 import org.jparsec.error.ParserException;
 
@@ -14,37 +15,52 @@ public class Repl {
     public Repl() {}
 
     public static void repl() {
+        repl(LiteralMode.EXACT);
+    }
+
+    public static void repl(LiteralMode mode) {
         Scanner cin = new Scanner(System.in);
 
         LinearInterpreter interpreter = new LinearInterpreter();
+        Parser<ExpressionBlock> parser = LinearParser.parser(mode);
 
         while (true) {
             System.out.print(">> ");
-            String input = cin.nextLine();
-            if (Objects.equals(input, "EXIT()")) {
+            if (!cin.hasNextLine()) {
+                break;
+            }
+            String line = cin.nextLine();
+            if (Objects.equals(line, "EXIT()")) {
                 break;
             }
 
-            Parser<ExpressionBlock> parser = LinearParser.parser();
-
-            boolean endedEarly;
+            // while a line leaves brackets open it cannot be complete, so continuation lines are only appended;
+            // the input is parsed once they close instead of once per line
+            StringBuilder input = new StringBuilder(line);
+            int depth = nesting(input);
             ExpressionBlock ast = null;
-            do {
-                endedEarly = false;
-                try {
-                    ast = parser.parse(input);
-                } catch (ParserException e) {
-                    if (Objects.equals(e.getErrorDetails().getEncountered(), "EOF")) {
-                        endedEarly = true;
-                        System.out.print(".. ");
-                        input = input + cin.nextLine();
-                    } else {
-                        System.out.println(e.toString());
+            while (true) {
+                if (depth <= 0) {
+                    try {
+                        ast = parser.parse(input);
+                        break;
+                    } catch (ParserException e) {
+                        // errors thrown while building a value, like ragged matrix rows, carry no details
+                        if (e.getErrorDetails() == null
+                                || !Objects.equals(e.getErrorDetails().getEncountered(), "EOF")) {
+                            System.out.println(e.toString());
+                            break;
+                        }
                     }
                 }
-
+                System.out.print(".. ");
+                if (!cin.hasNextLine()) {
+                    break;
+                }
+                line = cin.nextLine();
+                input.append(' ').append(line);
+                depth = nesting(input);
             }
-            while (endedEarly);
 
             if (ast != null) {
                 try {
@@ -57,4 +73,35 @@ public class Repl {
             }
         }
     }
+
+    // bracket depth at the end of input; `<-` is assignment, not an opening vector bracket, and brackets inside
+    // double-quoted strings such as file names do not count
+    private static int nesting(CharSequence input) {
+        int depth = 0;
+        boolean quoted = false;
+        for (int i = 0; i < input.length(); i++) {
+            if (quoted) {
+                switch (input.charAt(i)) {
+                    case '\\' -> i++;
+                    case '"' -> quoted = false;
+                    default -> {}
+                }
+                continue;
+            }
+            switch (input.charAt(i)) {
+                case '"' -> quoted = true;
+                case '[', '(', '{' -> depth++;
+                case ']', ')', '}', '>' -> depth--;
+                case '<' -> {
+                    if (i + 1 < input.length() && input.charAt(i + 1) == '-') {
+                        i++;
+                    } else {
+                        depth++;
+                    }
+                }
+                default -> {}
+            }
+        }
+        return depth;
+    }
 }
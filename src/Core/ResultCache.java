@@ -0,0 +1,272 @@
+package Core;
+
+import AbstractSyntaxTree.*;
+import Utilities.Schur;
+import org.apache.commons.math3.util.Pair;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// Results computed by Algorithms, keyed by the contents of the matrix they were computed from, so the same matrix
+// is only reduced once however it is reached: under two names, or rebuilt by an expression like A*B. Entries are
+// evicted least recently used first once the matrices they hold exceed a total number of entries.
+public final class ResultCache {
+    private final long capacity;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight = 0;
+    private long hits = 0, misses = 0;
+    private boolean enabled = true;
+
+    public ResultCache(long capacity) {
+        this.capacity = capacity;
+    }
+
+    // a fingerprint narrows the search; a hit still requires identical contents and storage
+    private record Key(Matrix matrix, long fingerprint) {
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key k && k.fingerprint == fingerprint && sameContent(k.matrix, matrix);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(fingerprint);
+        }
+    }
+
+    private static final class Entry {
+        RowReductionResult reduction;
+        Matrix inverse;
+        Pair<Matrix, Matrix> qr;
+        Schur schur;
+        long weight;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+        hits = 0;
+        misses = 0;
+    }
+
+    // while disabled every lookup misses and nothing is kept, so each call does its work in full; for benchmarks
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            clear();
+        }
+    }
+
+    // rrr with any parts it lacks filled in from the cache; a hit if that provides the part asked for
+    synchronized RowReductionResult lookup(RowReductionResult rrr, Function<RowReductionResult, Object> part) {
+        Entry entry = find(rrr.original());
+        if (entry != null && entry.reduction != null) {
+            RowReductionResult cached = entry.reduction;
+            rrr = new RowReductionResult(
+                    rrr.original(),
+                    rrr.efResult() != null ? rrr.efResult() : cached.efResult(),
+                    rrr.rrefResult() != null ? rrr.rrefResult() : cached.rrefResult(),
+                    rrr.determinant() != null ? rrr.determinant() : cached.determinant(),
+                    rrr.efOperations() != null ? rrr.efOperations() : cached.efOperations(),
+                    rrr.rrefOperations() != null ? rrr.rrefOperations() : cached.rrefOperations(),
+                    rrr.lu() != null ? rrr.lu() : cached.lu());
+        }
+        count(part.apply(rrr) != null);
+        return rrr;
+    }
+
+    synchronized RowReductionResult remember(RowReductionResult rrr) {
+        update(rrr.original(), entry -> entry.reduction = rrr);
+        return rrr;
+    }
+
+    synchronized Matrix inverse(Matrix m) {
+        Entry entry = find(m);
+        count(entry != null && entry.inverse != null);
+        return entry != null ? entry.inverse : null;
+    }
+
+    synchronized void rememberInverse(Matrix m, Matrix inverse) {
+        update(m, entry -> entry.inverse = inverse);
+    }
+
+    synchronized Pair<Matrix, Matrix> qr(Matrix m) {
+        Entry entry = find(m);
+        count(entry != null && entry.qr != null);
+        return entry != null ? entry.qr : null;
+    }
+
+    synchronized void rememberQR(Matrix m, Pair<Matrix, Matrix> qr) {
+        update(m, entry -> entry.qr = qr);
+    }
+
+    synchronized Schur schur(Matrix m) {
+        Entry entry = find(m);
+        count(entry != null && entry.schur != null);
+        return entry != null ? entry.schur : null;
+    }
+
+    synchronized void rememberSchur(Matrix m, Schur schur) {
+        update(m, entry -> entry.schur = schur);
+    }
+
+    private void count(boolean hit) {
+        if (hit) {
+            hits++;
+        } else {
+            misses++;
+        }
+    }
+
+    private Entry find(Matrix m) {
+        return enabled ? entries.get(key(m)) : null;
+    }
+
+    private void update(Matrix m, Consumer<Entry> change) {
+        if (!enabled) {
+            return;
+        }
+        Entry entry = entries.computeIfAbsent(key(m), k -> new Entry());
+        weight -= entry.weight;
+        change.accept(entry);
+        entry.weight = weigh(m, entry);
+        weight += entry.weight;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (weight > capacity && eldest.hasNext()) {
+            Entry evicted = eldest.next();
+            weight -= evicted.weight;
+            eldest.remove();
+        }
+    }
+
+    // the number of matrix entries and row operations an entry keeps alive
+    private static long weigh(Matrix m, Entry entry) {
+        long weight = entries(m);
+        if (entry.reduction != null) {
+            RowReductionResult rrr = entry.reduction;
+            weight += entries(rrr.efResult()) + entries(rrr.rrefResult());
+            weight += rrr.efOperations() != null ? rrr.efOperations().size() : 0;
+            weight += rrr.rrefOperations() != null ? rrr.rrefOperations().size() : 0;
+            weight += rrr.lu() != null ? rrr.lu().storedEntries() : 0;
+        }
+        weight += entries(entry.inverse);
+        if (entry.qr != null) {
+            weight += entries(entry.qr.getFirst()) + entries(entry.qr.getSecond());
+        }
+        weight += entry.schur != null ? entries(m) : 0;
+        return weight;
+    }
+
+    private static long entries(Matrix m) {
+        return m == null ? 0 : m.storedEntries();
+    }
+
+    private static Key key(Matrix m) {
+        return new Key(m, fingerprint(m));
+    }
+
+    private static long fingerprint(Matrix m) {
+        long hash = 31L * m.rowSize() + m.colSize();
+        if (m.isSparseMatrix()) {
+            final int[] rowStarts = m.sparseRowStarts();
+            final int[] columns = m.sparseColumns();
+            final double[] entries = m.sparseEntries();
+            for (int row = 0; row < m.colSize(); row++) {
+                hash = hash * 0x9E3779B97F4A7C15L + rowStarts[row + 1];
+            }
+            for (int k = 0; k < entries.length; k++) {
+                hash = hash * 0x9E3779B97F4A7C15L + columns[k];
+                hash = hash * 0x9E3779B97F4A7C15L + Double.doubleToLongBits(entries[k]);
+            }
+            return hash ^ 0x5BD1E995L;
+        }
+        if (m.isBandMatrix()) {
+            hash = hash * 0x9E3779B97F4A7C15L + m.lowerBandwidth();
+            hash = hash * 0x9E3779B97F4A7C15L + m.upperBandwidth();
+            for (double d : m.bandEntries()) {
+                hash = hash * 0x9E3779B97F4A7C15L + Double.doubleToLongBits(d);
+            }
+            return hash ^ 0x27D4EB2FL;
+        }
+        // an implicit diagonal is hashed by its diagonal alone, never assembled
+        if (m.isImplicitDiagonal()) {
+            for (int i = 0; i < m.rowSize(); i++) {
+                final Scalar entry = m.diagonalEntry(i);
+                hash = hash * 0x9E3779B97F4A7C15L
+                        + (entry instanceof DoubleScalar d ? Double.doubleToLongBits(d.value) : entry.hashCode());
+            }
+            return hash ^ 0x165667B1L;
+        }
+        if (m.isDoubleMatrix()) {
+            for (double d : m.doubleValues()) {
+                hash = hash * 0x9E3779B97F4A7C15L + Double.doubleToLongBits(d);
+            }
+            return hash;
+        }
+        for (int row = 0; row < m.colSize(); row++) {
+            for (int col = 0; col < m.rowSize(); col++) {
+                hash = hash * 0x9E3779B97F4A7C15L + m.get(row, col).hashCode();
+            }
+        }
+        return ~hash;
+    }
+
+    // unlike Matrix.equals, which compares doubles within an epsilon and ignores the shape
+    private static boolean sameContent(Matrix a, Matrix b) {
+        if (a == b) {
+            return true;
+        }
+        if (a.rowSize() != b.rowSize() || a.colSize() != b.colSize() || a.isDoubleMatrix() != b.isDoubleMatrix()
+                || a.isSparseMatrix() != b.isSparseMatrix() || a.isBandMatrix() != b.isBandMatrix()
+                || a.isImplicitDiagonal() != b.isImplicitDiagonal()) {
+            return false;
+        }
+        if (a.isImplicitDiagonal()) {
+            for (int i = 0; i < a.rowSize(); i++) {
+                final Scalar x = a.diagonalEntry(i);
+                final Scalar y = b.diagonalEntry(i);
+                if (x instanceof DoubleScalar dx && y instanceof DoubleScalar dy
+                        ? Double.doubleToLongBits(dx.value) != Double.doubleToLongBits(dy.value)
+                        : !x.equals(y)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (a.isBandMatrix()) {
+            return a.lowerBandwidth() == b.lowerBandwidth() && a.upperBandwidth() == b.upperBandwidth()
+                    && Arrays.equals(a.bandEntries(), b.bandEntries());
+        }
+        if (a.isSparseMatrix()) {
+            return Arrays.equals(a.sparseRowStarts(), b.sparseRowStarts())
+                    && Arrays.equals(a.sparseColumns(), b.sparseColumns())
+                    && Arrays.equals(a.sparseEntries(), b.sparseEntries());
+        }
+        if (a.isDoubleMatrix()) {
+            return Arrays.equals(a.doubleValues(), b.doubleValues());
+        }
+        for (int row = 0; row < a.colSize(); row++) {
+            for (int col = 0; col < a.rowSize(); col++) {
+                if (!a.get(row, col).equals(b.get(row, col))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
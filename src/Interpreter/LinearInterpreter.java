@@ -3,21 +3,32 @@ package Interpreter;
 import AbstractSyntaxTree.*;
 import AbstractSyntaxTree.Boolean;
 import Core.Algorithms;
+import Utilities.CsvFile;
+import Utilities.MatrixFile;
+import Utilities.WorkspaceFile;
 import org.apache.commons.math3.util.Pair;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Supplier;
 
 public class LinearInterpreter {
     private final Map<String, Value> variableMap;
+    // variables read by RESTORE that have not been used yet; each is decoded and moved to variableMap on first use
+    private final Map<String, Supplier<Value>> restoredMap;
     public LinearInterpreter() {
         variableMap = new HashMap<String, Value>();
+        restoredMap = new HashMap<String, Supplier<Value>>();
     }
     public Value interpret(ExpressionBlock ast) {
         return interpretExpressionBlock(ast);
     }
 
     public void assignAnswer(Value ans) {
+        restoredMap.remove("ANS");
         variableMap.put("ANS", ans);
     }
 
@@ -120,11 +131,16 @@ public class LinearInterpreter {
     }
 
     private Value interpretVariable(Variable variable) {
+        Supplier<Value> restored = restoredMap.remove(variable.getName());
+        if (restored != null) {
+            variableMap.put(variable.getName(), restored.get());
+        }
         return variableMap.get(variable.getName());
     }
 
     private Value interpretAssignment(Assignment assignment) {
         Value value = interpretExpression(assignment.getExp());
+        restoredMap.remove(assignment.getVar().getName());
         variableMap.put(assignment.getVar().getName(), value);
         return value;
     }
@@ -186,18 +202,15 @@ public class LinearInterpreter {
                 };
             }
             case DETERMINANT: {
-                RowReductionResult cache = switch (interpretExpression(arg)) {
-                    case Matrix m -> Algorithms.ef(m);
-                    case RowReductionResult rrr -> Algorithms.ef(rrr);
+                Pair<Scalar, RowReductionResult> resultPair = switch (interpretExpression(arg)) {
+                    case Matrix m -> Algorithms.determinant(m);
+                    case RowReductionResult rrr -> Algorithms.determinant(rrr);
                     default -> throw new IllegalArgumentException("Invalid type: DETERMINANT requires a matrix.");
                 };
                 if (arg instanceof Variable) {
-                    variableMap.put(((Variable) arg).getName(), cache);
-                }
-                if (cache.determinant() == null) {
-                    throw new IllegalArgumentException("Cannot take the determinant of a non-square matrix.");
+                    variableMap.put(((Variable) arg).getName(), resultPair.getSecond());
                 }
-                return cache.determinant();
+                return resultPair.getFirst();
             }
             case PROJECT: {
                 Value val1 = interpretExpression(arg);
@@ -369,6 +382,20 @@ public class LinearInterpreter {
                     default -> throw new IllegalArgumentException("Invalid type: TRANSPOSE requires a matrix.");
                 };
             }
+            case SPARSE: {
+                return switch (interpretExpression(arg)) {
+                    case Matrix m -> m.toSparseMatrix();
+                    case RowReductionResult rrr -> rrr.original().toSparseMatrix();
+                    default -> throw new IllegalArgumentException("Invalid type: SPARSE requires a matrix.");
+                };
+            }
+            case BANDED: {
+                return switch (interpretExpression(arg)) {
+                    case Matrix m -> m.toBandMatrix();
+                    case RowReductionResult rrr -> rrr.original().toBandMatrix();
+                    default -> throw new IllegalArgumentException("Invalid type: BANDED requires a matrix.");
+                };
+            }
             case ORTHO_BASIS: {
                 return switch (interpretExpression(arg)) {
                     case VectorList vl -> Algorithms.gramSchmidt(vl);
@@ -392,6 +419,108 @@ public class LinearInterpreter {
                     default -> throw new IllegalArgumentException("Invalid type: IS_INDEPENDENT requires a set of vectors.");
                 };
             }
+            case SOLVE: {
+                Matrix rhs = switch (interpretExpression(functionExpression.getArgs().getLast())) {
+                    case Matrix m -> m;
+                    case RowReductionResult rrr -> rrr.original();
+                    default -> throw new IllegalArgumentException("Invalid type(s): SOLVE requires a matrix and a vector or matrix.");
+                };
+                Pair<Matrix, RowReductionResult> resultPair = switch (interpretExpression(arg)) {
+                    case Matrix m -> Algorithms.solve(m, rhs);
+                    case RowReductionResult rrr -> Algorithms.solve(rrr, rhs);
+                    default -> throw new IllegalArgumentException("Invalid type(s): SOLVE requires a matrix and a vector or matrix.");
+                };
+                if (arg instanceof Variable) {
+                    variableMap.put(((Variable) arg).getName(), resultPair.getSecond());
+                }
+                if (rhs instanceof Vector) {
+                    return resultPair.getFirst().asVector();
+                }
+                return resultPair.getFirst();
+            }
+            case EIGENVALUES: {
+                return switch (interpretExpression(arg)) {
+                    case Matrix m -> Algorithms.eigenvalues(m);
+                    case RowReductionResult rrr -> Algorithms.eigenvalues(rrr.original());
+                    default -> throw new IllegalArgumentException("Invalid type: EIGENVALUES requires a matrix.");
+                };
+            }
+            case SAVE: {
+                Matrix m = switch (interpretExpression(arg)) {
+                    case Matrix matrix -> matrix;
+                    case RowReductionResult rrr -> rrr.original();
+                    default -> throw new IllegalArgumentException("Invalid type(s): SAVE requires a matrix and a file name.");
+                };
+                if (!(interpretExpression(functionExpression.getArgs().getLast()) instanceof Text path)) {
+                    throw new IllegalArgumentException("Invalid type(s): SAVE requires a matrix and a file name.");
+                }
+                try {
+                    MatrixFile.write(m, Path.of(path.getValue()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return path;
+            }
+            case LOAD: {
+                if (!(interpretExpression(arg) instanceof Text path)) {
+                    throw new IllegalArgumentException("Invalid type: LOAD requires a file name.");
+                }
+                try {
+                    return MatrixFile.read(Path.of(path.getValue()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            case SNAPSHOT: {
+                if (!(interpretExpression(arg) instanceof Text path)) {
+                    throw new IllegalArgumentException("Invalid type: SNAPSHOT requires a file name.");
+                }
+                for (Map.Entry<String, Supplier<Value>> restored : restoredMap.entrySet()) {
+                    variableMap.put(restored.getKey(), restored.getValue().get());
+                }
+                restoredMap.clear();
+                try {
+                    WorkspaceFile.write(variableMap, Path.of(path.getValue()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return path;
+            }
+            case RESTORE: {
+                if (!(interpretExpression(arg) instanceof Text path)) {
+                    throw new IllegalArgumentException("Invalid type: RESTORE requires a file name.");
+                }
+                try {
+                    Map<String, Supplier<Value>> restored = WorkspaceFile.read(Path.of(path.getValue()));
+                    variableMap.keySet().removeAll(restored.keySet());
+                    restoredMap.putAll(restored);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return path;
+            }
+            case LOAD_CSV: {
+                if (!(interpretExpression(arg) instanceof Text path)) {
+                    throw new IllegalArgumentException("Invalid type: LOAD_CSV requires a file name.");
+                }
+                // LOAD_CSV("file", "vectors") reads each line as a vector instead of a matrix row
+                String shape = "matrix";
+                if (functionExpression.getArgs().size() > 1) {
+                    if (!(interpretExpression(functionExpression.getArgs().get(1)) instanceof Text t)) {
+                        throw new IllegalArgumentException("Invalid type: LOAD_CSV takes \"matrix\" or \"vectors\" as its shape.");
+                    }
+                    shape = t.getValue();
+                }
+                try {
+                    return switch (shape) {
+                        case "matrix" -> CsvFile.read(Path.of(path.getValue()));
+                        case "vectors" -> CsvFile.readVectors(Path.of(path.getValue()));
+                        default -> throw new IllegalArgumentException("Invalid type: LOAD_CSV takes \"matrix\" or \"vectors\" as its shape.");
+                    };
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
         }
         throw new IllegalStateException("Unknown function: " + functionExpression.getFunc());
     }
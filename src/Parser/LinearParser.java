@@ -2,31 +2,41 @@ package Parser;
 
 import AbstractSyntaxTree.*;
 import org.jparsec.*;
-import org.junit.runner.manipulation.Ordering;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.BinaryOperator;
 import java.util.function.Function;
 import java.util.function.UnaryOperator;
 
 public class LinearParser {
-    private static final Parser<?> integerTokenizer = Terminals.IntegerLiteral.TOKENIZER;
-    private static final Parser<?> doubleTokenizer = Terminals.DecimalLiteral.TOKENIZER;
-
     private static final Terminals terminals = Terminals.operators(
             "+","-","*","/","(",")","=",";","[","]","|","<-",",","<",">","{","}",
             "RREF","EF","IDENTITY","INVERSE","SPAN","DETERMINANT","PROJECT","DIM","RANK","NULLITY",
             "IS_CONSISTENT","COL","ROW","NUL","SPANS","IS_BASIS","QR","AUGMENT","EIGENSPACE",
-            "IS_EIGENVALUE","IS_EIGENVECTOR","TRANSPOSE","ORTHO_BASIS","IN_SPAN","IS_INDEPENDENT");
+            "IS_EIGENVALUE","IS_EIGENVECTOR","TRANSPOSE","ORTHO_BASIS","IN_SPAN","IS_INDEPENDENT","SOLVE",
+            "EIGENVALUES","SAVE","LOAD","LOAD_CSV","SNAPSHOT","RESTORE","SPARSE",
+            "BANDED");
 
     private static final Parser<?> identifiers = Terminals.Identifier.TOKENIZER;
 
     private static final Parser<Void> ignored = Scanners.WHITESPACES.skipMany();
 
-    public static final Parser<?> tokenizer = Parsers.or(doubleTokenizer, integerTokenizer, terminals.tokenizer(), identifiers);
+    // numbers, and whole numeric matrix and vector literals, become single tokens holding the finished value
+    private static Parser<?> tokenizer(LiteralMode mode) {
+        return Parsers.or(
+                LiteralLexer.MATRIX.toScanner("matrix literal").source().map(s -> LiteralLexer.matrix(s, mode)),
+                LiteralLexer.VECTOR.toScanner("vector literal").source().map(s -> LiteralLexer.vector(s, mode)),
+                Scanners.DECIMAL.source().map(s -> LiteralLexer.number(s, mode)),
+                Terminals.StringLiteral.DOUBLE_QUOTE_TOKENIZER,
+                terminals.tokenizer(),
+                identifiers
+        );
+    }
 
     private static Parser<ExpressionBlock> statementBlockParser(){
         return Parsers.or(assignmentParser(), expressionParser()).sepBy(terminals.token(";")).map(ExpressionBlock::new);
@@ -91,7 +101,16 @@ public class LinearParser {
                 isIndependentParser(arg),
                 isEigenvalueParser(arg),
                 isEigenvectorParser(arg),
-                eigenspaceParser(arg)
+                eigenspaceParser(arg),
+                solveParser(arg),
+                eigenvaluesParser(arg),
+                saveParser(arg),
+                loadParser(arg),
+                loadCsvParser(arg),
+                snapshotParser(arg),
+                restoreParser(arg),
+                sparseParser(arg),
+                bandedParser(arg)
         );
     }
 
@@ -295,6 +314,78 @@ public class LinearParser {
                         new FunctionExpression(FunctionName.IS_INDEPENDENT, args));
     }
 
+    static Parser<FunctionExpression> solveParser(Parser<Expression> arg) {
+        return Parsers.sequence(
+                terminals.token("SOLVE"),
+                argumentList(arg),
+                (unused, args) ->
+                        new FunctionExpression(FunctionName.SOLVE, args));
+    }
+
+    static Parser<FunctionExpression> eigenvaluesParser(Parser<Expression> arg) {
+        return Parsers.sequence(
+                terminals.token("EIGENVALUES"),
+                argumentList(arg),
+                (unused, args) ->
+                        new FunctionExpression(FunctionName.EIGENVALUES, args));
+    }
+
+    static Parser<FunctionExpression> saveParser(Parser<Expression> arg) {
+        return Parsers.sequence(
+                terminals.token("SAVE"),
+                argumentList(arg),
+                (unused, args) ->
+                        new FunctionExpression(FunctionName.SAVE, args));
+    }
+
+    static Parser<FunctionExpression> loadParser(Parser<Expression> arg) {
+        return Parsers.sequence(
+                terminals.token("LOAD"),
+                argumentList(arg),
+                (unused, args) ->
+                        new FunctionExpression(FunctionName.LOAD, args));
+    }
+
+    static Parser<FunctionExpression> loadCsvParser(Parser<Expression> arg) {
+        return Parsers.sequence(
+                terminals.token("LOAD_CSV"),
+                argumentList(arg),
+                (unused, args) ->
+                        new FunctionExpression(FunctionName.LOAD_CSV, args));
+    }
+
+    static Parser<FunctionExpression> snapshotParser(Parser<Expression> arg) {
+        return Parsers.sequence(
+                terminals.token("SNAPSHOT"),
+                argumentList(arg),
+                (unused, args) ->
+                        new FunctionExpression(FunctionName.SNAPSHOT, args));
+    }
+
+    static Parser<FunctionExpression> restoreParser(Parser<Expression> arg) {
+        return Parsers.sequence(
+                terminals.token("RESTORE"),
+                argumentList(arg),
+                (unused, args) ->
+                        new FunctionExpression(FunctionName.RESTORE, args));
+    }
+
+    static Parser<FunctionExpression> sparseParser(Parser<Expression> arg) {
+        return Parsers.sequence(
+                terminals.token("SPARSE"),
+                argumentList(arg),
+                (unused, args) ->
+                        new FunctionExpression(FunctionName.SPARSE, args));
+    }
+
+    static Parser<FunctionExpression> bandedParser(Parser<Expression> arg) {
+        return Parsers.sequence(
+                terminals.token("BANDED"),
+                argumentList(arg),
+                (unused, args) ->
+                        new FunctionExpression(FunctionName.BANDED, args));
+    }
+
     static Parser<List<Expression>> argumentList(Parser<Expression> arg) {
         return parens(arg.sepBy(terminals.token(",")));
     }
@@ -308,16 +399,24 @@ public class LinearParser {
                 scalarParser(),
                 vectorParser(),
                 matrixParser(),
-                vectorListParser()
+                vectorListParser(),
+                textParser()
         ).map(ValueExpression::new);
     }
 
+    private static Parser<Text> textParser() {
+        return Terminals.StringLiteral.PARSER.map(Text::new);
+    }
+
     private static Parser<Vector> vectorParser() {
-        return Parsers.between(
-                terminals.token("<"),
-                rowParser(),
-                terminals.token(">")
-        ).map(Vector::new);
+        return Parsers.or(
+                Parsers.tokenType(Vector.class, "vector literal"),
+                Parsers.between(
+                        terminals.token("<"),
+                        rowParser(),
+                        terminals.token(">")
+                ).map(Vector::new)
+        );
     }
 
     private static Parser<VectorList> vectorListParser() {
@@ -329,16 +428,19 @@ public class LinearParser {
     }
 
     private static Parser<Matrix> matrixParser() {
-        return Parsers.between(
-                terminals.token("["),
-                rowParser().sepBy1(terminals.token("|")),
-                terminals.token("]")).map(lists -> {
-                    List<Scalar> values = lists.stream().flatMap(List::stream).toList();
-                    if (values.size() != lists.getFirst().size() * lists.size()) {
-                        throw new IllegalArgumentException("All rows in a matrix must be of equal length.");
-                    }
-                    return new Matrix(values, lists.getFirst().size(), lists.size());
-                });
+        return Parsers.or(
+                Parsers.tokenType(Matrix.class, "matrix literal"),
+                Parsers.between(
+                        terminals.token("["),
+                        rowParser().sepBy1(terminals.token("|")),
+                        terminals.token("]")).map(lists -> {
+                            List<Scalar> values = lists.stream().flatMap(List::stream).toList();
+                            if (values.size() != lists.getFirst().size() * lists.size()) {
+                                throw new IllegalArgumentException("All rows in a matrix must be of equal length.");
+                            }
+                            return new Matrix(values, lists.getFirst().size(), lists.size());
+                        })
+        );
     }
 
     private static Parser<List<Scalar>> rowParser() {
@@ -346,18 +448,7 @@ public class LinearParser {
     }
 
     private static Parser<Scalar> scalarParser() {
-        return Parsers.or(
-                decimalScalar(),
-                integerScalar()
-        );
-    }
-
-    private static Parser<Scalar> decimalScalar() {
-        return Terminals.DecimalLiteral.PARSER.map(s -> new FractionScalar(Double.parseDouble(s)));
-    }
-
-    private static Parser<Scalar> integerScalar() {
-        return Terminals.IntegerLiteral.PARSER.map(s -> new FractionScalar(Integer.parseInt(s)));
+        return Parsers.tokenType(Scalar.class, "number");
     }
 
     // Operators
@@ -376,7 +467,23 @@ public class LinearParser {
         return terminals.token(token).retn(value);
     }
 
+    // jparsec parsers are immutable and keep no state between parses, so one instance per mode is shared by every
+    // caller; the holder defers building them until the operator constants above have been initialized
+    private static final class Holder {
+        private static final Map<LiteralMode, Parser<ExpressionBlock>> PARSERS = new EnumMap<>(LiteralMode.class);
+
+        static {
+            for (LiteralMode mode : LiteralMode.values()) {
+                PARSERS.put(mode, statementBlockParser().from(tokenizer(mode), ignored.skipMany()));
+            }
+        }
+    }
+
     public static Parser<ExpressionBlock> parser() {
-        return statementBlockParser().from(tokenizer, ignored.skipMany());
+        return parser(LiteralMode.EXACT);
+    }
+
+    public static Parser<ExpressionBlock> parser(LiteralMode mode) {
+        return Holder.PARSERS.get(mode);
     }
 }
@@ -0,0 +1,201 @@
+package Parser;
+
+import AbstractSyntaxTree.*;
+import org.jparsec.pattern.Pattern;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+// Numeric literals, read straight from their characters. Whole `[ ... | ... ]` and `< ... >` literals are scanned
+// once into a pre-sized list, instead of producing a jparsec token and several combinator objects per entry.
+// Anything the scan does not accept, such as `[1-2 3]` or rows of different lengths, is left to the grammar in
+// LinearParser, which produces the same value or reports the same error.
+final class LiteralLexer {
+    static final Pattern MATRIX = new LiteralPattern('[', ']');
+    static final Pattern VECTOR = new LiteralPattern('<', '>');
+
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1024;
+    private static final FractionScalar[] SMALL_INTEGERS = new FractionScalar[CACHE_HIGH - CACHE_LOW];
+
+    static {
+        for (int i = 0; i < SMALL_INTEGERS.length; i++) {
+            SMALL_INTEGERS[i] = new FractionScalar(i + CACHE_LOW);
+        }
+    }
+
+    private LiteralLexer() {}
+
+    private static final class LiteralPattern extends Pattern {
+        private final char open, close;
+
+        LiteralPattern(char open, char close) {
+            this.open = open;
+            this.close = close;
+        }
+
+        @Override
+        public int match(CharSequence src, int begin, int end) {
+            final int length = scan(src, begin, end, open, close, null, null);
+            return length < 0 ? MISMATCH : length;
+        }
+    }
+
+    static Matrix matrix(String source, LiteralMode mode) {
+        List<Scalar> values = new ArrayList<>(source.length() / 2 + 1);
+        final int rows = -scan(source, 0, source.length(), '[', ']', mode, values);
+        return new Matrix(values, values.size() / rows, rows);
+    }
+
+    static Vector vector(String source, LiteralMode mode) {
+        List<Scalar> values = new ArrayList<>(source.length() / 2 + 1);
+        scan(source, 0, source.length(), '<', '>', mode, values);
+        return new Vector(values);
+    }
+
+    // Validates the literal starting at begin. With values == null, returns the number of characters it spans or -1;
+    // otherwise the source is known to be valid, the entries are appended to values and minus the row count is
+    // returned.
+    private static int scan(
+            CharSequence src,
+            int begin,
+            int end,
+            char open,
+            char close,
+            LiteralMode mode,
+            List<Scalar> values
+    ) {
+        int pos = begin;
+        if (pos >= end || src.charAt(pos) != open) {
+            return -1;
+        }
+        pos++;
+        // `<-` is the assignment token, never the start of a vector
+        if (open == '<' && pos < end && src.charAt(pos) == '-') {
+            return -1;
+        }
+        int rows = 0;
+        int width = -1;
+        int entries = 0;
+        while (true) {
+            pos = skipWhitespace(src, pos, end);
+            if (pos >= end) {
+                return -1;
+            }
+            char c = src.charAt(pos);
+            if (c == close || (c == '|' && open == '[')) {
+                if (entries == 0 || (width != -1 && entries != width)) {
+                    return -1;
+                }
+                width = entries;
+                entries = 0;
+                rows++;
+                pos++;
+                if (c == close) {
+                    return values == null ? pos - begin : -rows;
+                }
+                continue;
+            }
+            boolean negative = false;
+            if (c == '-') {
+                negative = true;
+                pos = skipWhitespace(src, pos + 1, end);
+            }
+            final int start = pos;
+            boolean decimal = false;
+            int digits = 0;
+            while (pos < end) {
+                c = src.charAt(pos);
+                if (c >= '0' && c <= '9') {
+                    digits++;
+                } else if (c == '.' && !decimal) {
+                    decimal = true;
+                } else {
+                    break;
+                }
+                pos++;
+            }
+            if (digits == 0) {
+                return -1;
+            }
+            // a number must be followed by a separator; `1-2` and the like go through the grammar
+            if (pos >= end) {
+                return -1;
+            }
+            c = src.charAt(pos);
+            if (!Character.isWhitespace(c) && c != close && !(c == '|' && open == '[')) {
+                return -1;
+            }
+            if (values != null) {
+                values.add(number(src, start, pos, negative, mode));
+            }
+            entries++;
+        }
+    }
+
+    private static int skipWhitespace(CharSequence src, int pos, int end) {
+        while (pos < end && Character.isWhitespace(src.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    // a numeric literal token: digits with at most one decimal point
+    static Scalar number(String source, LiteralMode mode) {
+        return number(source, 0, source.length(), false, mode);
+    }
+
+    // the digits in src[start, end), with at most one decimal point, read without going through a double
+    // unless the mode asks for one
+    private static Scalar number(CharSequence src, int start, int end, boolean negative, LiteralMode mode) {
+        int point = -1;
+        for (int i = start; i < end; i++) {
+            if (src.charAt(i) == '.') {
+                point = i;
+            }
+        }
+        if (point != -1 && mode == LiteralMode.BINARY64) {
+            final double value = Double.parseDouble(src.subSequence(start, end).toString());
+            return new DoubleScalar(negative ? -value : value);
+        }
+        final int scale = point == -1 ? 0 : end - point - 1;
+        final int digits = end - start - (point == -1 ? 0 : 1);
+        if (digits > 18) {
+            StringBuilder unscaled = new StringBuilder(digits + 1);
+            if (negative) {
+                unscaled.append('-');
+            }
+            unscaled.append(src, start, point == -1 ? end : point);
+            if (point != -1) {
+                unscaled.append(src, point + 1, end);
+            }
+            return BigRationalScalar.valueOf(new BigInteger(unscaled.toString()), BigInteger.TEN.pow(scale));
+        }
+        long numerator = 0;
+        for (int i = start; i < end; i++) {
+            if (i != point) {
+                numerator = numerator * 10 + (src.charAt(i) - '0');
+            }
+        }
+        if (negative) {
+            numerator = -numerator;
+        }
+        if (scale == 0 && numerator >= Integer.MIN_VALUE && numerator <= Integer.MAX_VALUE) {
+            return small((int) numerator);
+        }
+        long denominator = 1;
+        for (int i = 0; i < scale; i++) {
+            denominator *= 10;
+        }
+        return BigRationalScalar.valueOf(BigInteger.valueOf(numerator), BigInteger.valueOf(denominator));
+    }
+
+    // FractionScalars are immutable, so the common small entries can be shared
+    private static FractionScalar small(int value) {
+        if (value >= CACHE_LOW && value < CACHE_HIGH) {
+            return SMALL_INTEGERS[value - CACHE_LOW];
+        }
+        return new FractionScalar(value);
+    }
+}
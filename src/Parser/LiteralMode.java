@@ -0,0 +1,9 @@
+package Parser;
+
+// how decimal literals such as 0.125 are read; integer literals are exact either way
+public enum LiteralMode {
+    // the fraction the digits spell, so 0.1 is exactly 1/10
+    EXACT,
+    // the nearest double, as Double.parseDouble gives
+    BINARY64
+}
@@ -0,0 +1,108 @@
+package Utilities;
+
+import AbstractSyntaxTree.*;
+
+// The echelon forms of an invertible band matrix, read off its band LU factorization in O(n * lower * (lower + upper))
+// rather than by elimination over whole rows. The echelon form is U, itself a band matrix, and the reduced form is
+// the identity. The row operations are the swaps and multipliers the factorization made, followed by back
+// substitution within the band. A singular band matrix has no such shortcut; reduce returns null for it, and it is
+// left to SparseElimination.
+public final class BandElimination {
+    private final Matrix efResult;
+    private final Matrix rrefResult;
+    private final LU lu;
+    private final RowOperationLog efOperations;
+    private final RowOperationLog rrefOperations;
+
+    private BandElimination(
+            Matrix efResult,
+            Matrix rrefResult,
+            LU lu,
+            RowOperationLog efOperations,
+            RowOperationLog rrefOperations) {
+        this.efResult = efResult;
+        this.rrefResult = rrefResult;
+        this.lu = lu;
+        this.efOperations = efOperations;
+        this.rrefOperations = rrefOperations;
+    }
+
+    public Matrix efResult() {
+        return efResult;
+    }
+
+    public Matrix rrefResult() {
+        return rrefResult;
+    }
+
+    public Scalar determinant() {
+        return lu.determinant();
+    }
+
+    public LU lu() {
+        return lu;
+    }
+
+    public RowOperationLog efOperations() {
+        return efOperations;
+    }
+
+    public RowOperationLog rrefOperations() {
+        return rrefOperations;
+    }
+
+    // without record, the operation logs are left out
+    public static BandElimination reduce(Matrix m, boolean reduced, boolean record) {
+        LU lu = LU.factor(m);
+        if (lu.isSingular()) {
+            return null;
+        }
+        final Matrix factors = lu.factors();
+        final int[] pivots = lu.pivots();
+        final int n = factors.colSize();
+        final int lower = factors.lowerBandwidth();
+        final int upper = factors.upperBandwidth();
+        final int stride = lower + upper + 1;
+        final double[] a = factors.bandEntries();
+
+        double[] u = new double[Math.multiplyExact(n, upper + 1)];
+        for (int row = 0; row < n; row++) {
+            System.arraycopy(a, row * stride + lower, u, row * (upper + 1), Math.min(upper + 1, n - row));
+        }
+        RowOperationLog efOperations = new RowOperationLog(record);
+        for (int k = 0; record && k < n; k++) {
+            if (pivots[k] != k) {
+                efOperations.swap(k, pivots[k]);
+            }
+            for (int row = k + 1; row <= Math.min(n - 1, k + lower); row++) {
+                final double l = a[row * stride + k - row + lower];
+                if (l != 0) {
+                    efOperations.replace(row, k, -l);
+                }
+            }
+        }
+        final Matrix ef = Matrix.banded(u, 0, upper, n);
+        if (!reduced) {
+            return new BandElimination(ef, null, lu, record ? efOperations : null, null);
+        }
+
+        // back substitution from the last row up: once row k is scaled, it is zero but for its pivot, and only the
+        // upper rows above it have an entry in its column
+        RowOperationLog rrefOperations = new RowOperationLog(record);
+        for (int k = n - 1; record && k >= 0; k--) {
+            rrefOperations.scale(k, 1 / u[k * (upper + 1)]);
+            for (int row = Math.max(0, k - upper); row < k; row++) {
+                final double entry = u[row * (upper + 1) + k - row];
+                if (entry != 0) {
+                    rrefOperations.replace(row, k, -entry);
+                }
+            }
+        }
+        return new BandElimination(
+                ef,
+                Matrix.identity(n).toDoubleMatrix(),
+                lu,
+                record ? efOperations : null,
+                record ? rrefOperations : null);
+    }
+}
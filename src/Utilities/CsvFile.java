@@ -0,0 +1,389 @@
+package Utilities;
+
+import AbstractSyntaxTree.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+// Numeric text tables behind LOAD_CSV: one row per line, entries separated by commas, tabs, semicolons or runs of
+// spaces, and an optional header line. The file is cut into byte ranges on line boundaries; the ranges are mapped and
+// scanned on the common ForkJoinPool, first to count their rows and then to parse them straight into a double[].
+public final class CsvFile {
+    private static final long MIN_CHUNK = 1 << 20;
+    private static final long MAX_CHUNK = 1 << 28;
+    private static final byte WHITESPACE = 0;
+    // every integer below 2^53 and every power of ten up to 10^22 is exact, so one multiplication or division
+    // of the two is correctly rounded
+    private static final double[] POWERS_OF_TEN = new double[23];
+    private static final int MAX_FAST_DIGITS = 15;
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private CsvFile() {}
+
+    public static Matrix read(Path path) throws IOException {
+        Table table = readTable(path);
+        return new Matrix(table.data, table.cols, table.rows);
+    }
+
+    // one vector per line
+    public static VectorList readVectors(Path path) throws IOException {
+        Table table = readTable(path);
+        List<Vector> vectors = new ArrayList<>(table.rows);
+        for (int row = 0; row < table.rows; row++) {
+            vectors.add(new Vector(Arrays.copyOfRange(table.data, row * table.cols, (row + 1) * table.cols)));
+        }
+        return new VectorList(vectors);
+    }
+
+    private record Table(double[] data, int rows, int cols) {}
+
+    private static Table readTable(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            final long size = channel.size();
+            ByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, MAX_CHUNK));
+
+            // the first line that parses fixes the separator and the width; a line before it that does not is a header
+            int lineStart = skipBlankLines(head, 0, head.limit());
+            if (lineStart == head.limit()) {
+                throw new IllegalArgumentException(String.format("%s contains no data.", path));
+            }
+            int lineEnd = lineEnd(head, lineStart, head.limit());
+            byte separator = delimiter(head, lineStart, lineEnd);
+            int cols = countEntries(head, lineStart, lineEnd, separator);
+            try {
+                parseLine(head, lineStart, lineEnd, separator, new double[cols], 0, cols, 1, path);
+            } catch (IllegalArgumentException header) {
+                lineStart = skipBlankLines(head, lineEnd, head.limit());
+                if (lineStart == head.limit()) {
+                    throw new IllegalArgumentException(String.format("%s contains no data.", path));
+                }
+                lineEnd = lineEnd(head, lineStart, head.limit());
+                separator = delimiter(head, lineStart, lineEnd);
+                cols = countEntries(head, lineStart, lineEnd, separator);
+            }
+            final byte delimiter = separator;
+            final int width = cols;
+
+            final long[] bounds = chunkBounds(channel, lineStart, size);
+            final int chunks = bounds.length - 1;
+            final int[] counts = new int[chunks];
+            inParallel(chunks, chunk -> {
+                ByteBuffer buffer = map(channel, bounds, chunk);
+                int rows = 0;
+                for (int pos = 0; pos < buffer.limit(); pos = lineEnd(buffer, pos, buffer.limit())) {
+                    if (!isBlank(buffer, pos, lineEnd(buffer, pos, buffer.limit()))) {
+                        rows++;
+                    }
+                }
+                counts[chunk] = rows;
+            });
+
+            final int[] firstRow = new int[chunks + 1];
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                firstRow[chunk + 1] = firstRow[chunk] + counts[chunk];
+            }
+            final int rows = firstRow[chunks];
+            if ((long) rows * width > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(String.format("%s has too many entries for one matrix.", path));
+            }
+            final double[] data = new double[rows * width];
+            inParallel(chunks, chunk -> {
+                ByteBuffer buffer = map(channel, bounds, chunk);
+                int row = firstRow[chunk];
+                for (int pos = 0; pos < buffer.limit(); ) {
+                    final int end = lineEnd(buffer, pos, buffer.limit());
+                    if (!isBlank(buffer, pos, end)) {
+                        parseLine(buffer, pos, end, delimiter, data, row * width, width, row + 1, path);
+                        row++;
+                    }
+                    pos = end;
+                }
+            });
+            return new Table(data, rows, width);
+        }
+    }
+
+    private interface ChunkTask {
+        void run(int chunk) throws IOException;
+    }
+
+    // runs task for every chunk on the common pool; failures are rethrown as they were raised, earliest chunk first
+    private static void inParallel(int chunks, ChunkTask task) throws IOException {
+        final Exception[] failures = new Exception[chunks];
+        List<Callable<Void>> tasks = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            final int chunk = i;
+            tasks.add(() -> {
+                try {
+                    task.run(chunk);
+                } catch (IOException | RuntimeException e) {
+                    failures[chunk] = e;
+                }
+                return null;
+            });
+        }
+        ForkJoinPool.commonPool().invokeAll(tasks);
+        for (Exception failure : failures) {
+            switch (failure) {
+                case null -> {}
+                case IOException e -> throw e;
+                case RuntimeException e -> throw e;
+                default -> throw new IllegalStateException(failure);
+            }
+        }
+    }
+
+    // chunk boundaries from start to size, each moved forward to the start of a line
+    private static long[] chunkBounds(FileChannel channel, long start, long size) throws IOException {
+        final long target = Math.clamp(
+                (size - start) / (4L * ForkJoinPool.getCommonPoolParallelism()), MIN_CHUNK, MAX_CHUNK
+        );
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(start);
+        ByteBuffer probe = ByteBuffer.allocate(1 << 16);
+        long next = start + target;
+        while (next < size) {
+            long bound = -1;
+            for (long pos = next; bound == -1 && pos < size; pos += probe.limit()) {
+                probe.clear();
+                channel.read(probe, pos);
+                probe.flip();
+                for (int i = 0; i < probe.limit(); i++) {
+                    if (probe.get(i) == '\n') {
+                        bound = pos + i + 1;
+                        break;
+                    }
+                }
+            }
+            if (bound == -1 || bound >= size) {
+                break;
+            }
+            if (bound - bounds.getLast() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Lines longer than 2GB are not supported.");
+            }
+            bounds.add(bound);
+            next = bound + target;
+        }
+        if (size - bounds.getLast() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Lines longer than 2GB are not supported.");
+        }
+        bounds.add(size);
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static ByteBuffer map(FileChannel channel, long[] bounds, int chunk) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, bounds[chunk], bounds[chunk + 1] - bounds[chunk]);
+    }
+
+    // the index just past the line starting at pos, including its newline
+    private static int lineEnd(ByteBuffer buffer, int pos, int limit) {
+        while (pos < limit && buffer.get(pos) != '\n') {
+            pos++;
+        }
+        return pos < limit ? pos + 1 : limit;
+    }
+
+    private static int skipBlankLines(ByteBuffer buffer, int pos, int limit) {
+        while (pos < limit) {
+            final int end = lineEnd(buffer, pos, limit);
+            if (!isBlank(buffer, pos, end)) {
+                return pos;
+            }
+            pos = end;
+        }
+        return limit;
+    }
+
+    private static boolean isBlank(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!isSpace(buffer.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private static byte delimiter(ByteBuffer buffer, int from, int to) {
+        for (byte candidate : new byte[] {',', '\t', ';'}) {
+            for (int i = from; i < to; i++) {
+                if (buffer.get(i) == candidate) {
+                    return candidate;
+                }
+            }
+        }
+        return WHITESPACE;
+    }
+
+    private static int countEntries(ByteBuffer buffer, int from, int to, byte delimiter) {
+        int entries = 0;
+        for (int pos = from; ; ) {
+            final int start = entryStart(buffer, pos, to, delimiter);
+            if (delimiter == WHITESPACE && start == to) {
+                break;
+            }
+            final int end = entryEnd(buffer, start, to, delimiter);
+            entries++;
+            pos = nextEntry(buffer, end, to, delimiter);
+            if (pos == -1) {
+                break;
+            }
+        }
+        return entries;
+    }
+
+    private static int entryStart(ByteBuffer buffer, int pos, int to, byte delimiter) {
+        while (pos < to && buffer.get(pos) != delimiter && isSpace(buffer.get(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    // the index of the delimiter, or of the end of the line, after the entry starting at pos
+    private static int entryEnd(ByteBuffer buffer, int pos, int to, byte delimiter) {
+        while (pos < to) {
+            final byte b = buffer.get(pos);
+            if (delimiter == WHITESPACE ? isSpace(b) : b == delimiter || b == '\n') {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    // where the entry after the one ending at end starts, or -1 at the end of the line
+    private static int nextEntry(ByteBuffer buffer, int end, int to, byte delimiter) {
+        if (delimiter == WHITESPACE) {
+            return end;
+        }
+        return end < to && buffer.get(end) == delimiter ? end + 1 : -1;
+    }
+
+    private static void parseLine(
+            ByteBuffer buffer,
+            int from,
+            int to,
+            byte delimiter,
+            double[] out,
+            int offset,
+            int width,
+            int row,
+            Path path
+    ) {
+        int entries = 0;
+        for (int pos = from; ; ) {
+            final int start = entryStart(buffer, pos, to, delimiter);
+            if (delimiter == WHITESPACE && start == to) {
+                break;
+            }
+            final int end = entryEnd(buffer, start, to, delimiter);
+            if (entries == width) {
+                throw new IllegalArgumentException(String.format(
+                        "Row %d of %s has more than %d entries.", row, path, width
+                ));
+            }
+            out[offset + entries++] = parseDouble(buffer, start, end, row, path);
+            pos = nextEntry(buffer, end, to, delimiter);
+            if (pos == -1) {
+                break;
+            }
+        }
+        if (entries != width) {
+            throw new IllegalArgumentException(String.format(
+                    "Row %d of %s has %d entries instead of %d.", row, path, entries, width
+            ));
+        }
+    }
+
+    private static double parseDouble(ByteBuffer buffer, int from, int to, int row, Path path) {
+        while (to > from && isSpace(buffer.get(to - 1))) {
+            to--;
+        }
+        int pos = from;
+        boolean negative = false;
+        if (pos < to && (buffer.get(pos) == '-' || buffer.get(pos) == '+')) {
+            negative = buffer.get(pos) == '-';
+            pos++;
+        }
+        long mantissa = 0;
+        boolean anyDigit = false;
+        int digits = 0;
+        int exponent = 0;
+        boolean point = false;
+        for (; pos < to; pos++) {
+            final byte b = buffer.get(pos);
+            if (b >= '0' && b <= '9') {
+                anyDigit = true;
+                if (mantissa != 0 || b != '0') {
+                    digits++;
+                }
+                mantissa = digits <= MAX_FAST_DIGITS ? mantissa * 10 + (b - '0') : mantissa;
+                if (point) {
+                    exponent--;
+                }
+            } else if (b == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+        if (pos < to && (buffer.get(pos) == 'e' || buffer.get(pos) == 'E')) {
+            int e = 0;
+            boolean negativeExponent = false;
+            pos++;
+            if (pos < to && (buffer.get(pos) == '-' || buffer.get(pos) == '+')) {
+                negativeExponent = buffer.get(pos) == '-';
+                pos++;
+            }
+            final int start = pos;
+            for (; pos < to && buffer.get(pos) >= '0' && buffer.get(pos) <= '9' && e < 10000; pos++) {
+                e = e * 10 + (buffer.get(pos) - '0');
+            }
+            exponent += negativeExponent ? -e : e;
+            if (pos == start) {
+                return slowParse(buffer, from, to, row, path);
+            }
+        }
+        if (pos != to || !anyDigit || digits > MAX_FAST_DIGITS
+                || exponent < -(POWERS_OF_TEN.length - 1) || exponent > POWERS_OF_TEN.length - 1) {
+            return slowParse(buffer, from, to, row, path);
+        }
+        final double value = exponent < 0
+                ? mantissa / POWERS_OF_TEN[-exponent]
+                : mantissa * POWERS_OF_TEN[exponent];
+        return negative ? -value : value;
+    }
+
+    // long or unusual entries, like 20-digit decimals or NaN, are left to the JDK
+    private static double slowParse(ByteBuffer buffer, int from, int to, int row, Path path) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        final String entry = new String(bytes, StandardCharsets.ISO_8859_1);
+        try {
+            return Double.parseDouble(entry);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format(
+                    "Row %d of %s has an entry that is not a number: %s", row, path, entry.strip()
+            ));
+        }
+    }
+}
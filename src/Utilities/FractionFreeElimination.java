@@ -0,0 +1,377 @@
+package Utilities;
+
+import AbstractSyntaxTree.*;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Bareiss fraction-free elimination for exact matrices. Each row is scaled to integers, the elimination runs over
+// long and restarts over BigInteger if anything overflows, and only the results are turned back into fractions.
+public final class FractionFreeElimination {
+    private final Matrix efResult;
+    private final Matrix rrefResult;
+    private final Scalar determinant;
+    private final RowOperationLog efOperations;
+    private final RowOperationLog rrefOperations;
+
+    private FractionFreeElimination(
+            Matrix efResult,
+            Matrix rrefResult,
+            Scalar determinant,
+            RowOperationLog efOperations,
+            RowOperationLog rrefOperations) {
+        this.efResult = efResult;
+        this.rrefResult = rrefResult;
+        this.determinant = determinant;
+        this.efOperations = efOperations;
+        this.rrefOperations = rrefOperations;
+    }
+
+    public Matrix efResult() {
+        return efResult;
+    }
+
+    public Matrix rrefResult() {
+        return rrefResult;
+    }
+
+    public Scalar determinant() {
+        return determinant;
+    }
+
+    public RowOperationLog efOperations() {
+        return efOperations;
+    }
+
+    public RowOperationLog rrefOperations() {
+        return rrefOperations;
+    }
+
+    // what one pivot step looked like; enough to rebuild the echelon forms and the row operations afterwards. Rows
+    // are never moved during elimination, so row is the pivot row's index in the input.
+    private record Step(
+            int row,
+            int col,
+            BigInteger pivot,
+            BigInteger previous,
+            BigInteger[] column,
+            BigInteger[] pivotRow) {}
+
+    private record Elimination(List<Step> steps, BigInteger[][] rows) {}
+
+    public static FractionFreeElimination reduce(Matrix m, boolean reduced) {
+        return reduce(m, reduced, true);
+    }
+
+    // without record, the operation logs are left out
+    public static FractionFreeElimination reduce(Matrix m, boolean reduced, boolean record) {
+        final int rows = m.colSize();
+        final int cols = m.rowSize();
+        BigInteger[] scales = new BigInteger[rows];
+        Elimination elimination = eliminate(toIntegerRows(m, scales), cols, reduced, true);
+        final List<Step> steps = elimination.steps();
+        final int rank = steps.size();
+
+        // the echelon form holds the pivot rows in the order their columns came, then the zero rows in input order
+        int[] stepOf = new int[rows];
+        Arrays.fill(stepOf, rank);
+        int[] pivotCols = new int[rows];
+        Arrays.fill(pivotCols, cols);
+        for (int k = 0; k < rank; k++) {
+            stepOf[steps.get(k).row()] = k;
+            pivotCols[steps.get(k).row()] = steps.get(k).col();
+        }
+
+        // row operations as Gaussian elimination recorded them: every row cleared in turn against the pivot rows
+        // above it, and then the rows sorted into place by pivot column with adjacent swaps
+        RowOperationLog efOperations = new RowOperationLog(record);
+        for (int row = 0; record && row < rows; row++) {
+            for (int k = 0; k < Math.min(stepOf[row], rank); k++) {
+                final Step step = steps.get(k);
+                if (step.column()[row].signum() == 0) {
+                    continue;
+                }
+                efOperations.replace(
+                        row,
+                        step.row(),
+                        fraction(step.column()[row].multiply(scales[step.row()]).negate(),
+                                step.pivot().multiply(scales[row])));
+            }
+        }
+        boolean negate = false;
+        for (int row = 1; row < rows; row++) {
+            for (int swapRow = row; swapRow > 0 && pivotCols[swapRow - 1] > pivotCols[swapRow]; swapRow--) {
+                efOperations.swap(swapRow - 1, swapRow);
+                final int temp = pivotCols[swapRow - 1];
+                pivotCols[swapRow - 1] = pivotCols[swapRow];
+                pivotCols[swapRow] = temp;
+                negate = !negate;
+            }
+        }
+
+        List<Scalar> efValues = zeros(rows * cols);
+        for (int k = 0; k < rank; k++) {
+            final Step step = steps.get(k);
+            final BigInteger rowScale = step.previous().multiply(scales[step.row()]);
+            for (int col = step.col(); col < cols; col++) {
+                efValues.set(k * cols + col, fraction(step.pivotRow()[col], rowScale));
+            }
+        }
+        Matrix efResult = new Matrix(efValues, cols, rows);
+
+        Scalar determinant = null;
+        if (rows == cols) {
+            if (rank < rows) {
+                determinant = new FractionScalar(0);
+            } else {
+                BigInteger denominator = BigInteger.ONE;
+                for (BigInteger scale : scales) {
+                    denominator = denominator.multiply(scale);
+                }
+                BigInteger numerator = steps.getLast().pivot();
+                determinant = fraction(negate ? numerator.negate() : numerator, denominator);
+            }
+        }
+        if (!reduced) {
+            return new FractionFreeElimination(efResult, null, determinant, record ? efOperations : null, null);
+        }
+
+        // every pivot row of the fraction-free Gauss-Jordan result carries the last pivot on its diagonal. The row
+        // operations are the scalings and replacements of the original reduction, less its replacements by zero.
+        List<Scalar> rrefValues = zeros(rows * cols);
+        RowOperationLog rrefOperations = new RowOperationLog(record);
+        if (rank > 0) {
+            final BigInteger last = steps.getLast().pivot();
+            for (int k = 0; k < rank; k++) {
+                final Step step = steps.get(k);
+                for (int col = step.col(); col < cols; col++) {
+                    rrefValues.set(k * cols + col, fraction(elimination.rows()[step.row()][col], last));
+                }
+                if (record) {
+                    rrefOperations.scale(k, fraction(step.previous().multiply(scales[step.row()]), step.pivot()));
+                }
+                for (int above = k - 1; record && above >= 0; above--) {
+                    final BigInteger entry = step.column()[steps.get(above).row()];
+                    if (entry.signum() == 0) {
+                        continue;
+                    }
+                    rrefOperations.replace(above, k, fraction(entry.negate(), step.previous()));
+                }
+            }
+        }
+        return new FractionFreeElimination(
+                efResult,
+                new Matrix(rrefValues, cols, rows),
+                determinant,
+                record ? efOperations : null,
+                record ? rrefOperations : null);
+    }
+
+    // Gauss-Jordan on [A | I]; null when A is singular
+    public static Matrix inverse(Matrix m) {
+        final int n = m.colSize();
+        BigInteger[] scales = new BigInteger[n];
+        BigInteger[][] augmented = new BigInteger[n][2 * n];
+        BigInteger[][] a = toIntegerRows(m, scales);
+        for (int row = 0; row < n; row++) {
+            System.arraycopy(a[row], 0, augmented[row], 0, n);
+            for (int col = n; col < 2 * n; col++) {
+                augmented[row][col] = col - n == row ? scales[row] : BigInteger.ZERO;
+            }
+        }
+        Elimination elimination = eliminate(augmented, n, true, false);
+        if (elimination.steps().size() < n) {
+            return null;
+        }
+        final BigInteger last = elimination.steps().getLast().pivot();
+        List<Scalar> values = new ArrayList<>(n * n);
+        for (Step step : elimination.steps()) {
+            for (int col = n; col < 2 * n; col++) {
+                values.add(fraction(elimination.rows()[step.row()][col], last));
+            }
+        }
+        return new Matrix(values, n, n);
+    }
+
+    private static BigInteger[][] toIntegerRows(Matrix m, BigInteger[] scales) {
+        final int rows = m.colSize();
+        final int cols = m.rowSize();
+        BigInteger[][] ret = new BigInteger[rows][cols];
+        for (int row = 0; row < rows; row++) {
+            BigInteger lcm = BigInteger.ONE;
+            for (int col = 0; col < cols; col++) {
+                BigInteger denominator = denominator(m.get(row, col));
+                lcm = lcm.divide(lcm.gcd(denominator)).multiply(denominator);
+            }
+            scales[row] = lcm;
+            for (int col = 0; col < cols; col++) {
+                Scalar s = m.get(row, col);
+                ret[row][col] = numerator(s).multiply(lcm.divide(denominator(s)));
+            }
+        }
+        return ret;
+    }
+
+    private static BigInteger numerator(Scalar s) {
+        return switch (s) {
+            case FractionScalar f -> BigInteger.valueOf(f.getNumerator());
+            case BigRationalScalar b -> b.getNumerator();
+            case DoubleScalar d -> throw new IllegalArgumentException("Fraction-free elimination requires an exact matrix.");
+        };
+    }
+
+    private static BigInteger denominator(Scalar s) {
+        return switch (s) {
+            case FractionScalar f -> BigInteger.valueOf(f.getDenominator());
+            case BigRationalScalar b -> b.getDenominator();
+            case DoubleScalar d -> throw new IllegalArgumentException("Fraction-free elimination requires an exact matrix.");
+        };
+    }
+
+    private static Elimination eliminate(BigInteger[][] a, int pivotColumns, boolean reduced, boolean record) {
+        long[][] narrow = narrow(a);
+        if (narrow != null) {
+            try {
+                return eliminateLong(narrow, pivotColumns, reduced, record);
+            } catch (ArithmeticException ignored) {
+                // an intermediate minor no longer fits in a long
+            }
+        }
+        return eliminateBig(a, pivotColumns, reduced, record);
+    }
+
+    private static long[][] narrow(BigInteger[][] a) {
+        long[][] ret = new long[a.length][];
+        for (int row = 0; row < a.length; row++) {
+            ret[row] = new long[a[row].length];
+            for (int col = 0; col < a[row].length; col++) {
+                if (a[row][col].bitLength() >= Long.SIZE) {
+                    return null;
+                }
+                ret[row][col] = a[row][col].longValue();
+            }
+        }
+        return ret;
+    }
+
+    private static Elimination eliminateLong(long[][] a, int pivotColumns, boolean reduced, boolean record) {
+        final int rows = a.length;
+        final int cols = rows == 0 ? 0 : a[0].length;
+        List<Step> steps = new ArrayList<>();
+        boolean[] assigned = new boolean[rows];
+        long previous = 1;
+        for (int col = 0; col < pivotColumns && steps.size() < rows; col++) {
+            // the first row without a pivot yet; leaving the rows in place keeps the pivot rows Gaussian elimination
+            // chose when it cleared each row against the ones above it
+            int pivotRow = 0;
+            while (pivotRow < rows && (assigned[pivotRow] || a[pivotRow][col] == 0)) {
+                pivotRow++;
+            }
+            if (pivotRow == rows) {
+                continue;
+            }
+            final long[] p = a[pivotRow];
+            final long pivot = p[col];
+            if (record) {
+                steps.add(new Step(pivotRow, col, BigInteger.valueOf(pivot), BigInteger.valueOf(previous),
+                        column(a, col), wide(p)));
+            } else {
+                steps.add(new Step(pivotRow, col, BigInteger.valueOf(pivot), BigInteger.valueOf(previous),
+                        null, null));
+            }
+            for (int row = 0; row < rows; row++) {
+                if (row == pivotRow || assigned[row] && !reduced) {
+                    continue;
+                }
+                final long[] r = a[row];
+                final long f = r[col];
+                // rows without a pivot are already zero to the left of this one
+                for (int j = assigned[row] ? 0 : col; j < cols; j++) {
+                    r[j] = Math.subtractExact(Math.multiplyExact(pivot, r[j]), Math.multiplyExact(f, p[j])) / previous;
+                }
+            }
+            assigned[pivotRow] = true;
+            previous = pivot;
+        }
+        BigInteger[][] ret = new BigInteger[rows][];
+        for (int row = 0; row < rows; row++) {
+            ret[row] = wide(a[row]);
+        }
+        return new Elimination(steps, ret);
+    }
+
+    private static Elimination eliminateBig(BigInteger[][] a, int pivotColumns, boolean reduced, boolean record) {
+        final int rows = a.length;
+        final int cols = rows == 0 ? 0 : a[0].length;
+        List<Step> steps = new ArrayList<>();
+        boolean[] assigned = new boolean[rows];
+        BigInteger previous = BigInteger.ONE;
+        for (int col = 0; col < pivotColumns && steps.size() < rows; col++) {
+            int pivotRow = 0;
+            while (pivotRow < rows && (assigned[pivotRow] || a[pivotRow][col].signum() == 0)) {
+                pivotRow++;
+            }
+            if (pivotRow == rows) {
+                continue;
+            }
+            final BigInteger[] p = a[pivotRow];
+            final BigInteger pivot = p[col];
+            if (record) {
+                BigInteger[] column = new BigInteger[rows];
+                for (int i = 0; i < rows; i++) {
+                    column[i] = a[i][col];
+                }
+                steps.add(new Step(pivotRow, col, pivot, previous, column, p.clone()));
+            } else {
+                steps.add(new Step(pivotRow, col, pivot, previous, null, null));
+            }
+            for (int row = 0; row < rows; row++) {
+                if (row == pivotRow || assigned[row] && !reduced) {
+                    continue;
+                }
+                final BigInteger[] r = a[row];
+                final BigInteger f = r[col];
+                for (int j = assigned[row] ? 0 : col; j < cols; j++) {
+                    BigInteger value = pivot.multiply(r[j]);
+                    if (f.signum() != 0 && p[j].signum() != 0) {
+                        value = value.subtract(f.multiply(p[j]));
+                    }
+                    r[j] = value.divide(previous);
+                }
+            }
+            assigned[pivotRow] = true;
+            previous = pivot;
+        }
+        return new Elimination(steps, a);
+    }
+
+    private static BigInteger[] column(long[][] a, int col) {
+        BigInteger[] ret = new BigInteger[a.length];
+        for (int row = 0; row < a.length; row++) {
+            ret[row] = BigInteger.valueOf(a[row][col]);
+        }
+        return ret;
+    }
+
+    private static BigInteger[] wide(long[] a) {
+        BigInteger[] ret = new BigInteger[a.length];
+        for (int i = 0; i < a.length; i++) {
+            ret[i] = BigInteger.valueOf(a[i]);
+        }
+        return ret;
+    }
+
+    private static List<Scalar> zeros(int size) {
+        List<Scalar> ret = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ret.add(new FractionScalar(0));
+        }
+        return ret;
+    }
+
+    private static Scalar fraction(BigInteger numerator, BigInteger denominator) {
+        return BigRationalScalar.valueOf(numerator, denominator);
+    }
+}
@@ -0,0 +1,567 @@
+package Utilities;
+
+import AbstractSyntaxTree.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// P * A = L * U, with L (unit diagonal) stored below the diagonal of factors and U on and above it
+public final class LU {
+    private static final double EPSILON = Math.pow(10, -9);
+
+    private final Matrix factors;
+    private final int[] pivots; // row i of P * A is row pivots[i] of A
+    private final boolean singular;
+    private final Scalar determinant;
+
+    LU(Matrix factors, int[] pivots, boolean singular, Scalar determinant) {
+        this.factors = factors;
+        this.pivots = pivots;
+        this.singular = singular;
+        this.determinant = determinant;
+    }
+
+    public static LU factor(Matrix m) {
+        if (m.colSize() != m.rowSize()) {
+            throw new IllegalArgumentException("Cannot LU-factor a non-square matrix.");
+        }
+        if (m.isBandMatrix()) {
+            return factorBand(m);
+        }
+        // triangular and permutation matrices are already factored, or nearly; the general
+        // factorizations below would find the same thing a column at a time
+        if (m.isUpperTriangular()) {
+            return ofUpper(m);
+        }
+        if (m.isPermutationMatrix()) {
+            return ofPermutation(m);
+        }
+        if (m.isLowerTriangular() && !isSingular(m)) {
+            return ofLower(m);
+        }
+        LU spd = cholesky(m);
+        if (spd != null) {
+            return spd;
+        }
+        if (m.isDoubleMatrix()) {
+            return factorDouble(m);
+        }
+        return factorExact(m);
+    }
+
+    // partial pivoting, mirroring Algorithms.ef on double matrices
+    private static LU factorDouble(Matrix m) {
+        final int n = m.colSize();
+        MatrixBuilder factors = new MatrixBuilder(m);
+        final double[] a = factors.doubleValues();
+        int[] pivots = identityPermutation(n);
+        boolean singular = false;
+        double determinant = 1;
+        for (int k = 0; k < n; k++) {
+            int best = k;
+            for (int row = k + 1; row < n; row++) {
+                if (Math.abs(a[row * n + k]) > Math.abs(a[best * n + k])) {
+                    best = row;
+                }
+            }
+            if (best != k) {
+                factors.swapRows(k, best);
+                swap(pivots, k, best);
+                determinant = -determinant;
+            }
+            final double pivot = a[k * n + k];
+            determinant *= pivot;
+            if (Math.abs(pivot) < EPSILON) {
+                singular = true;
+                continue;
+            }
+            for (int row = k + 1; row < n; row++) {
+                final double l = a[row * n + k] / pivot;
+                a[row * n + k] = l;
+                if (l == 0) {
+                    continue;
+                }
+                for (int col = k + 1; col < n; col++) {
+                    a[row * n + col] -= l * a[k * n + col];
+                }
+            }
+        }
+        return new LU(factors.build(), pivots, singular, new DoubleScalar(determinant));
+    }
+
+    // partial pivoting within the band, as LAPACK's gbtrf does, for O(n * lower * (lower + upper)) work; on a
+    // tridiagonal matrix this is the Thomas algorithm with pivoting. A swap moves a row up by at most lower, so U
+    // stays within lower + upper above the diagonal and fits with L in one band. The multipliers of step k stay in
+    // column k of the rows they were worked out for rather than following later swaps, and pivots[k] is the row
+    // swapped with row k at step k rather than a permutation
+    private static LU factorBand(Matrix m) {
+        final int n = m.colSize();
+        final int lower = m.lowerBandwidth();
+        final int upper = lower + m.upperBandwidth();
+        final int stride = lower + upper + 1;
+        final int sourceStride = lower + m.upperBandwidth() + 1;
+        final double[] source = m.bandEntries();
+        double[] a = new double[Math.multiplyExact(n, stride)];
+        for (int row = 0; row < n; row++) {
+            System.arraycopy(source, row * sourceStride, a, row * stride, sourceStride);
+        }
+        int[] pivots = new int[n];
+        boolean singular = false;
+        double determinant = 1;
+        for (int k = 0; k < n; k++) {
+            final int last = Math.min(n - 1, k + lower);
+            final int right = Math.min(n - 1, k + upper);
+            int best = k;
+            for (int row = k + 1; row <= last; row++) {
+                if (Math.abs(a[band(row, k, stride, lower)]) > Math.abs(a[band(best, k, stride, lower)])) {
+                    best = row;
+                }
+            }
+            pivots[k] = best;
+            if (best != k) {
+                for (int col = k; col <= right; col++) {
+                    final int i = band(k, col, stride, lower), j = band(best, col, stride, lower);
+                    final double temp = a[i];
+                    a[i] = a[j];
+                    a[j] = temp;
+                }
+                determinant = -determinant;
+            }
+            final double pivot = a[band(k, k, stride, lower)];
+            determinant *= pivot;
+            if (Math.abs(pivot) < EPSILON) {
+                singular = true;
+                continue;
+            }
+            for (int row = k + 1; row <= last; row++) {
+                final double l = a[band(row, k, stride, lower)] / pivot;
+                a[band(row, k, stride, lower)] = l;
+                if (l == 0) {
+                    continue;
+                }
+                for (int col = k + 1; col <= right; col++) {
+                    a[band(row, col, stride, lower)] -= l * a[band(k, col, stride, lower)];
+                }
+            }
+        }
+        return new LU(Matrix.banded(a, lower, upper, n), pivots, singular, new DoubleScalar(determinant));
+    }
+
+    // where entry (row, col) of a band matrix is kept
+    private static int band(int row, int col, int stride, int lower) {
+        return row * stride + col - row + lower;
+    }
+
+    // the first non-zero entry of each column is the pivot, mirroring Algorithms.ef on exact matrices
+    private static LU factorExact(Matrix m) {
+        final int n = m.colSize();
+        MatrixBuilder factors = new MatrixBuilder(m);
+        int[] pivots = identityPermutation(n);
+        boolean singular = false;
+        Scalar determinant = new FractionScalar(1);
+        for (int k = 0; k < n; k++) {
+            int row = k;
+            while (row < n && factors.get(row, k).equals(0)) {
+                row++;
+            }
+            if (row == n) {
+                singular = true;
+                determinant = new FractionScalar(0);
+                continue;
+            }
+            if (row != k) {
+                factors.swapRows(k, row);
+                swap(pivots, k, row);
+                determinant = determinant.negate();
+            }
+            final Scalar pivot = factors.get(k, k);
+            determinant = determinant.multiply(pivot);
+            for (row = k + 1; row < n; row++) {
+                Scalar l = factors.get(row, k).divide(pivot);
+                factors.set(row, k, l);
+                if (l.equals(0)) {
+                    continue;
+                }
+                for (int col = k + 1; col < n; col++) {
+                    factors.set(row, col, factors.get(row, col).subtract(l.multiply(factors.get(k, col))));
+                }
+            }
+        }
+        return new LU(factors.build(), pivots, singular, determinant);
+    }
+
+    // m = L * D * L^T when m is symmetric positive definite, or null when it is not. This is Cholesky without the
+    // square roots, so exact matrices stay exact: the lower triangle alone is eliminated, with no pivoting, in half
+    // the work of the general factorizations, and a pivot of D that is not positive shows m is not positive
+    // definite. The factors are kept in the usual layout, with U = D * L^T, so solve and the determinant need
+    // nothing of their own
+    public static LU cholesky(Matrix m) {
+        // sparse and band matrices are left to their own elimination, which keeps them sparse
+        if (m.colSize() != m.rowSize() || m.isSparseMatrix() || m.isBandMatrix() || !m.isSymmetric()) {
+            return null;
+        }
+        for (int i = 0; i < m.colSize(); i++) {
+            if (!isPositive(m.get(i, i))) {
+                return null;
+            }
+        }
+        return m.isDoubleMatrix() ? choleskyDouble(m) : choleskyExact(m);
+    }
+
+    // row by row, so each entry of L is one contiguous dot product with an earlier row
+    private static LU choleskyDouble(Matrix m) {
+        final int n = m.colSize();
+        MatrixBuilder factors = new MatrixBuilder(m);
+        final double[] a = factors.doubleValues();
+        double[] d = new double[n];
+        double[] scaled = new double[n]; // L[i][p] * D[p] along the current row
+        double determinant = 1;
+        for (int i = 0; i < n; i++) {
+            final int row = i * n;
+            for (int j = 0; j < i; j++) {
+                final double sum = a[row + j] - dot(scaled, a, j * n, j);
+                scaled[j] = sum;
+                a[row + j] = sum / d[j];
+            }
+            final double pivot = a[row + i] - dot(scaled, a, row, i);
+            if (!(pivot > EPSILON)) {
+                return null;
+            }
+            d[i] = pivot;
+            determinant *= pivot;
+        }
+        for (int i = 0; i < n; i++) {
+            a[i * n + i] = d[i];
+            for (int j = i + 1; j < n; j++) {
+                a[i * n + j] = d[i] * a[j * n + i];
+            }
+        }
+        return new LU(factors.build(), identityPermutation(n), false, new DoubleScalar(determinant));
+    }
+
+    // x[0..length) . y[from..from + length), in four independent sums so the additions need not wait on each other
+    private static double dot(double[] x, double[] y, int from, int length) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int p = 0;
+        for (; p + 3 < length; p += 4) {
+            s0 += x[p] * y[from + p];
+            s1 += x[p + 1] * y[from + p + 1];
+            s2 += x[p + 2] * y[from + p + 2];
+            s3 += x[p + 3] * y[from + p + 3];
+        }
+        for (; p < length; p++) {
+            s0 += x[p] * y[from + p];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    private static LU choleskyExact(Matrix m) {
+        final int n = m.colSize();
+        Scalar[] a = new Scalar[n * n];
+        Scalar[] d = new Scalar[n];
+        Scalar[] scaled = new Scalar[n]; // -L[i][p] * D[p] along the current row
+        ScalarAccumulator sum = new ScalarAccumulator();
+        ScalarAccumulator determinant = new ScalarAccumulator().set(new FractionScalar(1));
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < i; j++) {
+                sum.set(m.get(i, j));
+                for (int p = 0; p < j; p++) {
+                    sum.addProduct(scaled[p], a[j * n + p]);
+                }
+                final Scalar entry = sum.toScalar();
+                scaled[j] = entry.negate();
+                a[i * n + j] = entry.divide(d[j]);
+            }
+            sum.set(m.get(i, i));
+            for (int p = 0; p < i; p++) {
+                sum.addProduct(scaled[p], a[i * n + p]);
+            }
+            final Scalar pivot = sum.toScalar();
+            if (!isPositive(pivot)) {
+                return null;
+            }
+            d[i] = pivot;
+            determinant.multiply(pivot);
+        }
+        for (int i = 0; i < n; i++) {
+            a[i * n + i] = d[i];
+            for (int j = i + 1; j < n; j++) {
+                a[i * n + j] = d[i].multiply(a[j * n + i]);
+            }
+        }
+        return new LU(new Matrix(Arrays.asList(a), n, n), identityPermutation(n), false, determinant.toScalar());
+    }
+
+    private static boolean isPositive(Scalar s) {
+        return switch (s) {
+            case DoubleScalar d -> d.value > EPSILON;
+            case FractionScalar f -> f.getNumerator() > 0;
+            case BigRationalScalar b -> b.getNumerator().signum() > 0;
+        };
+    }
+
+    // U = m with L and P the identity
+    private static LU ofUpper(Matrix m) {
+        return new LU(m, identityPermutation(m.colSize()), isSingular(m), diagonalProduct(m));
+    }
+
+    // P * m = I, so P picks out, for each column, the row with its one
+    private static LU ofPermutation(Matrix m) {
+        final int[] columns = m.permutation();
+        final int n = columns.length;
+        int[] pivots = new int[n];
+        for (int row = 0; row < n; row++) {
+            pivots[columns[row]] = row;
+        }
+        // the sign of the permutation, from the parity of its cycles
+        boolean[] seen = new boolean[n];
+        boolean negative = false;
+        for (int row = 0; row < n; row++) {
+            for (int i = row; !seen[i]; i = columns[i]) {
+                seen[i] = true;
+                negative ^= columns[i] != row;
+            }
+        }
+        Matrix identity = new Matrix(n);
+        return m.isDoubleMatrix()
+                ? new LU(identity.toDoubleMatrix(), pivots, false, new DoubleScalar(negative ? -1 : 1))
+                : new LU(identity, pivots, false, new FractionScalar(negative ? -1 : 1));
+    }
+
+    // m = (m * D^-1) * D for the diagonal D of m, where m * D^-1 has a unit diagonal
+    private static LU ofLower(Matrix m) {
+        final int n = m.colSize();
+        MatrixBuilder factors = new MatrixBuilder(m);
+        if (m.isDoubleMatrix()) {
+            final double[] a = factors.doubleValues();
+            for (int col = 0; col < n; col++) {
+                final double d = a[col * n + col];
+                for (int row = col + 1; row < n; row++) {
+                    a[row * n + col] /= d;
+                }
+            }
+        } else {
+            for (int col = 0; col < n; col++) {
+                final Scalar d = factors.get(col, col);
+                for (int row = col + 1; row < n; row++) {
+                    if (!factors.get(row, col).equals(0)) {
+                        factors.set(row, col, factors.get(row, col).divide(d));
+                    }
+                }
+            }
+        }
+        return new LU(factors.build(), identityPermutation(n), false, diagonalProduct(m));
+    }
+
+    private static boolean isSingular(Matrix m) {
+        for (int i = 0; i < m.colSize(); i++) {
+            final Scalar d = m.get(i, i);
+            if (d instanceof DoubleScalar s ? Math.abs(s.value) < EPSILON : d.equals(0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the determinant of a triangular matrix
+    public static Scalar diagonalProduct(Matrix m) {
+        if (m.isDoubleMatrix()) {
+            double product = 1;
+            for (int i = 0; i < m.colSize(); i++) {
+                product *= ((DoubleScalar) m.get(i, i)).value;
+            }
+            return new DoubleScalar(product);
+        }
+        ScalarAccumulator product = new ScalarAccumulator().set(new FractionScalar(1));
+        for (int i = 0; i < m.colSize(); i++) {
+            product.multiply(m.get(i, i));
+        }
+        return product.toScalar();
+    }
+
+    private static int[] identityPermutation(int n) {
+        int[] p = new int[n];
+        for (int i = 0; i < n; i++) {
+            p[i] = i;
+        }
+        return p;
+    }
+
+    private static void swap(int[] p, int i, int j) {
+        int temp = p[i];
+        p[i] = p[j];
+        p[j] = temp;
+    }
+
+    public int size() {
+        return pivots.length;
+    }
+
+    // the entries the factors hold, for weighing a cached factorization
+    public long storedEntries() {
+        return factors.storedEntries();
+    }
+
+    // the raw factorization, for WorkspaceFile
+    Matrix factors() {
+        return factors;
+    }
+
+    int[] pivots() {
+        return pivots;
+    }
+
+    public boolean isSingular() {
+        return singular;
+    }
+
+    public Scalar determinant() {
+        return determinant;
+    }
+
+    // solves A * X = B for every column of B at once
+    public Matrix solve(Matrix b) {
+        final int n = size();
+        if (b.colSize() != n) {
+            throw new IllegalArgumentException(String.format(
+                    "Cannot solve a system with %d equations against a right-hand side with %d rows.",
+                    n,
+                    b.colSize()
+            ));
+        }
+        if (singular) {
+            throw new IllegalStateException("Matrix is not invertible.");
+        }
+        if (factors.isBandMatrix()) {
+            return solveBand(b.isDoubleMatrix() ? b : b.toDoubleMatrix());
+        }
+        if (factors.isDoubleMatrix() || b.isDoubleMatrix()) {
+            return solveDouble(b.isDoubleMatrix() ? b : b.toDoubleMatrix());
+        }
+        return solveExact(b);
+    }
+
+    private Matrix solveDouble(Matrix b) {
+        final int n = size();
+        final int k = b.rowSize();
+        final double[] lu = (factors.isDoubleMatrix() ? factors : factors.toDoubleMatrix()).doubleValues();
+        final double[] rhs = b.doubleValues();
+        double[] x = new double[n * k];
+        for (int row = 0; row < n; row++) {
+            System.arraycopy(rhs, pivots[row] * k, x, row * k, k);
+        }
+        // forward substitution with the unit lower factor
+        for (int row = 1; row < n; row++) {
+            for (int p = 0; p < row; p++) {
+                final double l = lu[row * n + p];
+                if (l == 0) {
+                    continue;
+                }
+                for (int col = 0; col < k; col++) {
+                    x[row * k + col] -= l * x[p * k + col];
+                }
+            }
+        }
+        // back substitution with the upper factor
+        for (int row = n - 1; row >= 0; row--) {
+            for (int p = row + 1; p < n; p++) {
+                final double u = lu[row * n + p];
+                if (u == 0) {
+                    continue;
+                }
+                for (int col = 0; col < k; col++) {
+                    x[row * k + col] -= u * x[p * k + col];
+                }
+            }
+            final double diag = lu[row * n + row];
+            for (int col = 0; col < k; col++) {
+                x[row * k + col] /= diag;
+            }
+        }
+        return new Matrix(x, k, n);
+    }
+
+    // the row swaps and multipliers in the order factorBand made them, then back substitution within the band
+    private Matrix solveBand(Matrix b) {
+        final int n = size();
+        final int k = b.rowSize();
+        final int lower = factors.lowerBandwidth();
+        final int upper = factors.upperBandwidth();
+        final int stride = lower + upper + 1;
+        final double[] lu = factors.bandEntries();
+        double[] x = b.doubleValues().clone();
+        for (int p = 0; p < n; p++) {
+            if (pivots[p] != p) {
+                for (int col = 0; col < k; col++) {
+                    final double temp = x[p * k + col];
+                    x[p * k + col] = x[pivots[p] * k + col];
+                    x[pivots[p] * k + col] = temp;
+                }
+            }
+            for (int row = p + 1; row <= Math.min(n - 1, p + lower); row++) {
+                final double l = lu[band(row, p, stride, lower)];
+                if (l == 0) {
+                    continue;
+                }
+                for (int col = 0; col < k; col++) {
+                    x[row * k + col] -= l * x[p * k + col];
+                }
+            }
+        }
+        for (int row = n - 1; row >= 0; row--) {
+            for (int p = row + 1; p <= Math.min(n - 1, row + upper); p++) {
+                final double u = lu[band(row, p, stride, lower)];
+                if (u == 0) {
+                    continue;
+                }
+                for (int col = 0; col < k; col++) {
+                    x[row * k + col] -= u * x[p * k + col];
+                }
+            }
+            final double diag = lu[band(row, row, stride, lower)];
+            for (int col = 0; col < k; col++) {
+                x[row * k + col] /= diag;
+            }
+        }
+        return new Matrix(x, k, n);
+    }
+
+    private Matrix solveExact(Matrix b) {
+        final int n = size();
+        final int k = b.rowSize();
+        List<Scalar> x = new ArrayList<>(n * k);
+        for (int row = 0; row < n; row++) {
+            for (int col = 0; col < k; col++) {
+                x.add(b.get(pivots[row], col));
+            }
+        }
+        for (int row = 1; row < n; row++) {
+            for (int p = 0; p < row; p++) {
+                final Scalar l = factors.get(row, p);
+                if (l.equals(0)) {
+                    continue;
+                }
+                for (int col = 0; col < k; col++) {
+                    x.set(row * k + col, x.get(row * k + col).subtract(l.multiply(x.get(p * k + col))));
+                }
+            }
+        }
+        for (int row = n - 1; row >= 0; row--) {
+            for (int p = row + 1; p < n; p++) {
+                final Scalar u = factors.get(row, p);
+                if (u.equals(0)) {
+                    continue;
+                }
+                for (int col = 0; col < k; col++) {
+                    x.set(row * k + col, x.get(row * k + col).subtract(u.multiply(x.get(p * k + col))));
+                }
+            }
+            final Scalar diag = factors.get(row, row);
+            for (int col = 0; col < k; col++) {
+                x.set(row * k + col, x.get(row * k + col).divide(diag));
+            }
+        }
+        return new Matrix(x, k, n);
+    }
+}
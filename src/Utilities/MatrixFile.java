@@ -0,0 +1,281 @@
+package Utilities;
+
+import AbstractSyntaxTree.*;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.*;
+
+// The binary matrix file behind LOAD and SAVE. A 16-byte little-endian header
+//     "JCAS" | version | shape | entry type | unused | rows (int) | columns (int)
+// is followed by the entries in row-major order: raw doubles, (numerator, denominator) int pairs, or, for rationals
+// that do not fit in ints, a length-prefixed two's-complement numerator and denominator per entry. Workspace
+// snapshots embed the same encoding for every matrix they hold.
+public final class MatrixFile {
+    private static final int MAGIC = 'J' | 'C' << 8 | 'A' << 16 | 'S' << 24;
+    private static final byte VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    // a single mapping is limited to 2GB, so fixed-width bodies are mapped a window of entries at a time
+    private static final int WINDOW = 1 << 27;
+
+    private static final byte MATRIX = 0, VECTOR = 1;
+    private static final byte DOUBLE = 0, FRACTION = 1, RATIONAL = 2;
+
+    private MatrixFile() {}
+
+    private record Header(byte shape, byte type, int rows, int cols) {
+        int entries() {
+            return rows * cols;
+        }
+
+        Matrix shape(Matrix m) {
+            return shape == VECTOR ? m.asVector() : m;
+        }
+    }
+
+    // how a matrix will be written; rational entries are converted to bytes once, while measuring
+    record Layout(byte type, List<byte[]> parts, long size) {}
+
+    static Layout layout(Matrix m) {
+        final byte type = entryType(m);
+        if (type != RATIONAL) {
+            return new Layout(type, null, HEADER_BYTES + 8L * m.rowSize() * m.colSize());
+        }
+        List<byte[]> parts = new ArrayList<>(2 * m.rowSize() * m.colSize());
+        long size = HEADER_BYTES;
+        for (int row = 0; row < m.colSize(); row++) {
+            for (int col = 0; col < m.rowSize(); col++) {
+                BigRationalScalar value = new BigRationalScalar(m.get(row, col));
+                byte[] numerator = value.getNumerator().toByteArray();
+                byte[] denominator = value.getDenominator().toByteArray();
+                parts.add(numerator);
+                parts.add(denominator);
+                size += 8L + numerator.length + denominator.length;
+            }
+        }
+        return new Layout(type, parts, size);
+    }
+
+    public static void write(Matrix m, Path path) throws IOException {
+        Layout layout = layout(m);
+        try (FileChannel channel = FileChannel.open(path, CREATE, TRUNCATE_EXISTING, READ, WRITE)) {
+            if (layout.type() == RATIONAL) {
+                if (layout.size() > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Matrix is too large to save with exact entries.");
+                }
+                encode(m, layout, map(channel, FileChannel.MapMode.READ_WRITE, 0, layout.size()));
+                return;
+            }
+            putHeader(map(channel, FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES), m, layout.type());
+            final int n = m.rowSize() * m.colSize();
+            for (int start = 0; start < n; start += WINDOW) {
+                final int length = Math.min(WINDOW, n - start);
+                ByteBuffer window = map(channel, FileChannel.MapMode.READ_WRITE, HEADER_BYTES + 8L * start, 8L * length);
+                putEntries(window, m, layout.type(), start, length);
+            }
+        }
+    }
+
+    public static Matrix read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            final long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw notAMatrixFile(path);
+            }
+            Header header = getHeader(map(channel, FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES), path);
+            if (header.type() == RATIONAL) {
+                if (size > Integer.MAX_VALUE) {
+                    throw notAMatrixFile(path);
+                }
+                ByteBuffer in = map(channel, FileChannel.MapMode.READ_ONLY, 0, size);
+                Matrix m = decode(in, path);
+                if (in.hasRemaining()) {
+                    throw notAMatrixFile(path);
+                }
+                return m;
+            }
+            final int n = header.entries();
+            if (size != HEADER_BYTES + 8L * n) {
+                throw notAMatrixFile(path);
+            }
+            double[] doubles = header.type() == DOUBLE ? new double[n] : null;
+            List<Scalar> values = header.type() == FRACTION ? new ArrayList<>(n) : null;
+            for (int start = 0; start < n; start += WINDOW) {
+                final int length = Math.min(WINDOW, n - start);
+                ByteBuffer window = map(channel, FileChannel.MapMode.READ_ONLY, HEADER_BYTES + 8L * start, 8L * length);
+                if (doubles != null) {
+                    getDoubles(window, doubles, start, length);
+                } else {
+                    getFractions(window, values, length);
+                }
+            }
+            return header.shape(doubles != null
+                    ? new Matrix(doubles, header.cols(), header.rows())
+                    : new Matrix(values, header.cols(), header.rows()));
+        }
+    }
+
+    // writes m, header included, at the position of out; out must have layout.size() bytes remaining
+    static void encode(Matrix m, Layout layout, ByteBuffer out) {
+        putHeader(out, m, layout.type());
+        if (layout.type() == RATIONAL) {
+            for (byte[] part : layout.parts()) {
+                putInteger(out, part);
+            }
+        } else {
+            putEntries(out, m, layout.type(), 0, m.rowSize() * m.colSize());
+        }
+    }
+
+    // reads a matrix, header included, from the position of in and leaves in just past it
+    static Matrix decode(ByteBuffer in, Path path) {
+        Header header = getHeader(in, path);
+        final int n = header.entries();
+        if (header.type() != RATIONAL && in.remaining() < 8L * n) {
+            throw notAMatrixFile(path);
+        }
+        return header.shape(switch (header.type()) {
+            case DOUBLE -> {
+                double[] data = new double[n];
+                getDoubles(in, data, 0, n);
+                yield new Matrix(data, header.cols(), header.rows());
+            }
+            case FRACTION -> {
+                List<Scalar> values = new ArrayList<>(n);
+                getFractions(in, values, n);
+                yield new Matrix(values, header.cols(), header.rows());
+            }
+            default -> {
+                List<Scalar> values = new ArrayList<>(n);
+                try {
+                    for (int i = 0; i < n; i++) {
+                        values.add(BigRationalScalar.valueOf(getInteger(in), getInteger(in)));
+                    }
+                } catch (BufferUnderflowException | NegativeArraySizeException | NumberFormatException
+                         | ArithmeticException e) {
+                    throw notAMatrixFile(path);
+                }
+                yield new Matrix(values, header.cols(), header.rows());
+            }
+        });
+    }
+
+    private static void putHeader(ByteBuffer out, Matrix m, byte type) {
+        out.putInt(MAGIC)
+                .put(VERSION)
+                .put(m instanceof Vector ? VECTOR : MATRIX)
+                .put(type)
+                .put((byte) 0)
+                .putInt(m.colSize())
+                .putInt(m.rowSize());
+    }
+
+    private static Header getHeader(ByteBuffer in, Path path) {
+        if (in.remaining() < HEADER_BYTES || in.getInt() != MAGIC) {
+            throw notAMatrixFile(path);
+        }
+        final byte version = in.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException(String.format(
+                    "Unsupported matrix file version %d in %s.", version, path
+            ));
+        }
+        final byte shape = in.get();
+        final byte type = in.get();
+        in.get();
+        final int rows = in.getInt();
+        final int cols = in.getInt();
+        if (rows < 0 || cols < 0 || (long) rows * cols > Integer.MAX_VALUE || (shape == VECTOR && cols != 1)
+                || type < DOUBLE || type > RATIONAL) {
+            throw notAMatrixFile(path);
+        }
+        return new Header(shape, type, rows, cols);
+    }
+
+    // doubles anywhere make the whole file doubles; exact entries are int pairs unless one of them needs more room
+    private static byte entryType(Matrix m) {
+        if (m.isDoubleMatrix()) {
+            return DOUBLE;
+        }
+        byte type = FRACTION;
+        for (int row = 0; row < m.colSize(); row++) {
+            for (int col = 0; col < m.rowSize(); col++) {
+                switch (m.get(row, col)) {
+                    case DoubleScalar d -> {
+                        return DOUBLE;
+                    }
+                    case BigRationalScalar b -> {
+                        if (!fitsInt(b)) {
+                            type = RATIONAL;
+                        }
+                    }
+                    case FractionScalar f -> {}
+                }
+            }
+        }
+        return type;
+    }
+
+    private static boolean fitsInt(BigRationalScalar b) {
+        return b.getNumerator().bitLength() < Integer.SIZE && b.getDenominator().bitLength() < Integer.SIZE;
+    }
+
+    // entries [start, start + length) of a double or fraction matrix, 8 bytes each
+    private static void putEntries(ByteBuffer out, Matrix m, byte type, int start, int length) {
+        if (type == DOUBLE) {
+            double[] data = m.isDoubleMatrix() ? m.doubleValues() : m.toDoubleMatrix().doubleValues();
+            out.asDoubleBuffer().put(data, start, length);
+            out.position(out.position() + 8 * length);
+            return;
+        }
+        final int cols = m.rowSize();
+        for (int i = start; i < start + length; i++) {
+            switch (m.get(i / cols, i % cols)) {
+                case FractionScalar f -> out.putInt(f.getNumerator()).putInt(f.getDenominator());
+                case BigRationalScalar b -> out
+                        .putInt(b.getNumerator().intValueExact())
+                        .putInt(b.getDenominator().intValueExact());
+                case DoubleScalar d -> throw new IllegalStateException("A double has no exact numerator.");
+            }
+        }
+    }
+
+    private static void getDoubles(ByteBuffer in, double[] data, int start, int length) {
+        // one bulk copy out of the page cache, with no per-entry parsing or boxing
+        in.asDoubleBuffer().get(data, start, length);
+        in.position(in.position() + 8 * length);
+    }
+
+    private static void getFractions(ByteBuffer in, List<Scalar> values, int length) {
+        for (int i = 0; i < length; i++) {
+            values.add(new FractionScalar(in.getInt(), in.getInt()));
+        }
+    }
+
+    static void putInteger(ByteBuffer out, byte[] bytes) {
+        out.putInt(bytes.length).put(bytes);
+    }
+
+    static BigInteger getInteger(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new BigInteger(bytes);
+    }
+
+    static ByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long position, long size)
+            throws IOException {
+        return channel.map(mode, position, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static IllegalArgumentException notAMatrixFile(Path path) {
+        return new IllegalArgumentException(String.format("%s is not a valid matrix file.", path));
+    }
+}
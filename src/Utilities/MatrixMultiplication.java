@@ -0,0 +1,141 @@
+package Utilities;
+
+import java.io.Serial;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Dense row-major double GEMM: C (m x n) = A (m x k) * B (k x n)
+public final class MatrixMultiplication {
+    // below this many multiply-adds the product is computed on the calling thread without packing
+    private static final long PARALLEL_THRESHOLD = 64L * 64 * 64;
+    private static final int ROW_BLOCK = 64;
+    private static final int K_BLOCK = 128;
+    private static final int J_BLOCK = 256;
+
+    private MatrixMultiplication() {}
+
+    public static double[] multiply(double[] a, double[] b, int m, int k, int n) {
+        double[] c = new double[m * n];
+        if ((long) m * k * n < PARALLEL_THRESHOLD) {
+            multiplySimple(a, b, c, m, k, n);
+            return c;
+        }
+        PackedPanels panels = new PackedPanels(b, k, n);
+        ForkJoinPool.commonPool().invoke(new RowBlockTask(a, panels, c, 0, m));
+        return c;
+    }
+
+    private static void multiplySimple(double[] a, double[] b, double[] c, int m, int k, int n) {
+        for (int i = 0; i < m; i++) {
+            for (int p = 0; p < k; p++) {
+                // no skipping zeros: 0 * Inf and 0 * NaN are NaN here as in the tiled kernel
+                final double aip = a[i * k + p];
+                for (int j = 0; j < n; j++) {
+                    c[i * n + j] += aip * b[p * n + j];
+                }
+            }
+        }
+    }
+
+    // B split into K_BLOCK x J_BLOCK tiles, each stored contiguously so a tile stays in cache while rows of A stream past it
+    private static final class PackedPanels {
+        final double[] data;
+        final int k, n;
+        final int kBlocks, jBlocks;
+
+        PackedPanels(double[] b, int k, int n) {
+            this.k = k;
+            this.n = n;
+            this.kBlocks = (k + K_BLOCK - 1) / K_BLOCK;
+            this.jBlocks = (n + J_BLOCK - 1) / J_BLOCK;
+            this.data = new double[k * n];
+            int offset = 0;
+            for (int kb = 0; kb < kBlocks; kb++) {
+                final int k0 = kb * K_BLOCK, k1 = Math.min(k, k0 + K_BLOCK);
+                for (int jb = 0; jb < jBlocks; jb++) {
+                    final int j0 = jb * J_BLOCK, j1 = Math.min(n, j0 + J_BLOCK);
+                    for (int p = k0; p < k1; p++) {
+                        System.arraycopy(b, p * n + j0, data, offset, j1 - j0);
+                        offset += j1 - j0;
+                    }
+                }
+            }
+        }
+
+        int offset(int kb, int jb) {
+            final int k0 = kb * K_BLOCK;
+            final int j0 = jb * J_BLOCK;
+            // all tiles of earlier k-blocks are full height; tiles earlier in this k-block are full width
+            return k0 * n + (Math.min(k, k0 + K_BLOCK) - k0) * j0;
+        }
+    }
+
+    // tasks only live inside one multiply call and are never serialized
+    private static final class RowBlockTask extends RecursiveAction {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final transient double[] a;
+        private final transient PackedPanels b;
+        private final transient double[] c;
+        private final int rowStart, rowEnd;
+
+        RowBlockTask(double[] a, PackedPanels b, double[] c, int rowStart, int rowEnd) {
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            this.rowStart = rowStart;
+            this.rowEnd = rowEnd;
+        }
+
+        @Override
+        protected void compute() {
+            if (rowEnd - rowStart <= ROW_BLOCK) {
+                multiplyRows();
+                return;
+            }
+            final int mid = (rowStart + rowEnd) >>> 1;
+            invokeAll(new RowBlockTask(a, b, c, rowStart, mid), new RowBlockTask(a, b, c, mid, rowEnd));
+        }
+
+        private void multiplyRows() {
+            final int k = b.k, n = b.n;
+            for (int kb = 0; kb < b.kBlocks; kb++) {
+                final int k0 = kb * K_BLOCK, k1 = Math.min(k, k0 + K_BLOCK);
+                for (int jb = 0; jb < b.jBlocks; jb++) {
+                    final int j0 = jb * J_BLOCK, width = Math.min(n, j0 + J_BLOCK) - j0;
+                    final int panel = b.offset(kb, jb);
+                    int i = rowStart;
+                    // four rows of C share each load from the packed tile
+                    for (; i + 3 < rowEnd; i += 4) {
+                        final int c0 = i * n + j0, c1 = c0 + n, c2 = c1 + n, c3 = c2 + n;
+                        for (int p = k0; p < k1; p++) {
+                            final double a0 = a[i * k + p];
+                            final double a1 = a[(i + 1) * k + p];
+                            final double a2 = a[(i + 2) * k + p];
+                            final double a3 = a[(i + 3) * k + p];
+                            final int row = panel + (p - k0) * width;
+                            for (int j = 0; j < width; j++) {
+                                final double bpj = b.data[row + j];
+                                c[c0 + j] += a0 * bpj;
+                                c[c1 + j] += a1 * bpj;
+                                c[c2 + j] += a2 * bpj;
+                                c[c3 + j] += a3 * bpj;
+                            }
+                        }
+                    }
+                    for (; i < rowEnd; i++) {
+                        final int ci = i * n + j0;
+                        for (int p = k0; p < k1; p++) {
+                            final double aip = a[i * k + p];
+                            final int row = panel + (p - k0) * width;
+                            for (int j = 0; j < width; j++) {
+                                c[ci + j] += aip * b.data[row + j];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
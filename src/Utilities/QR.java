@@ -0,0 +1,122 @@
+package Utilities;
+
+import AbstractSyntaxTree.Matrix;
+
+// Householder QR of an m x n matrix (m >= n), kept in compact reflector form until Q or R is asked for
+public final class QR {
+    private static final double EPSILON = Math.pow(10, -9);
+
+    // column-major: reflector vectors on and below the diagonal, R above it
+    private final double[] qr;
+    private final double[] rDiag;
+    private final int m, n;
+
+    private QR(double[] qr, double[] rDiag, int m, int n) {
+        this.qr = qr;
+        this.rDiag = rDiag;
+        this.m = m;
+        this.n = n;
+    }
+
+    public static QR factor(Matrix a) {
+        final int m = a.colSize();
+        final int n = a.rowSize();
+        if (n > m) {
+            throw new IllegalArgumentException("The columns of A must form a basis for Col A");
+        }
+        final double[] values = (a.isDoubleMatrix() ? a : a.toDoubleMatrix()).doubleValues();
+        double[] qr = new double[m * n];
+        for (int row = 0; row < m; row++) {
+            for (int col = 0; col < n; col++) {
+                qr[col * m + row] = values[row * n + col];
+            }
+        }
+        double[] rDiag = new double[n];
+        for (int k = 0; k < n; k++) {
+            final int ck = k * m;
+            double norm = 0;
+            for (int i = k; i < m; i++) {
+                norm += qr[ck + i] * qr[ck + i];
+            }
+            norm = Math.sqrt(norm);
+            if (norm != 0) {
+                if (qr[ck + k] < 0) {
+                    norm = -norm;
+                }
+                for (int i = k; i < m; i++) {
+                    qr[ck + i] /= norm;
+                }
+                qr[ck + k] += 1;
+                for (int j = k + 1; j < n; j++) {
+                    final int cj = j * m;
+                    double s = 0;
+                    for (int i = k; i < m; i++) {
+                        s += qr[ck + i] * qr[cj + i];
+                    }
+                    s = -s / qr[ck + k];
+                    for (int i = k; i < m; i++) {
+                        qr[cj + i] += s * qr[ck + i];
+                    }
+                }
+            }
+            rDiag[k] = -norm;
+        }
+        return new QR(qr, rDiag, m, n);
+    }
+
+    public boolean isFullRank() {
+        for (double d : rDiag) {
+            if (Math.abs(d) < EPSILON) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the diagonal of R is made positive so Q matches the Gram-Schmidt basis of the columns
+    private double sign(int k) {
+        return rDiag[k] < 0 ? -1 : 1;
+    }
+
+    public Matrix q() {
+        double[] q = new double[m * n]; // column-major while the reflectors are applied
+        for (int k = n - 1; k >= 0; k--) {
+            final int ck = k * m;
+            q[ck + k] = 1;
+            if (qr[ck + k] == 0) {
+                continue;
+            }
+            for (int j = k; j < n; j++) {
+                final int cj = j * m;
+                double s = 0;
+                for (int i = k; i < m; i++) {
+                    s += qr[ck + i] * q[cj + i];
+                }
+                s = -s / qr[ck + k];
+                for (int i = k; i < m; i++) {
+                    q[cj + i] += s * qr[ck + i];
+                }
+            }
+        }
+        double[] ret = new double[m * n];
+        for (int col = 0; col < n; col++) {
+            final double sign = sign(col);
+            for (int row = 0; row < m; row++) {
+                ret[row * n + col] = sign * q[col * m + row];
+            }
+        }
+        return new Matrix(ret, n, m);
+    }
+
+    public Matrix r() {
+        double[] ret = new double[n * n];
+        for (int row = 0; row < n; row++) {
+            final double sign = sign(row);
+            ret[row * n + row] = sign * rDiag[row];
+            for (int col = row + 1; col < n; col++) {
+                ret[row * n + col] = sign * qr[col * m + row];
+            }
+        }
+        return new Matrix(ret, n, n);
+    }
+}
@@ -0,0 +1,169 @@
+package Utilities;
+
+import AbstractSyntaxTree.*;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+// The row operations of a reduction, kept as parallel primitive arrays (op code, rows, scale) rather than an object
+// per operation, so a long log stays small and replays onto any matrix in one pass over a single working copy.
+// A log that is not recording drops what it is given, for callers that only want the reduced matrix.
+public final class RowOperationLog extends AbstractList<RowOperation> implements RandomAccess {
+    private static final byte SWAP = 0, SCALE = 1, REPLACE = 2;
+
+    private final boolean recording;
+    private byte[] codes = new byte[16];
+    private int[] targets = new int[16];
+    private int[] sources = new int[16];
+    private double[] scales = new double[16];
+    // allocated with the first exact scale; scales still holds its double value
+    private Scalar[] exactScales;
+    private int size = 0;
+
+    public RowOperationLog() {
+        this(true);
+    }
+
+    public RowOperationLog(boolean recording) {
+        this.recording = recording;
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    public void swap(int r1, int r2) {
+        append(SWAP, r1, r2, 1, null);
+    }
+
+    public void scale(int row, double scale) {
+        append(SCALE, row, row, scale, null);
+    }
+
+    public void scale(int row, Scalar scale) {
+        append(SCALE, row, row, doubleValue(scale), scale instanceof DoubleScalar ? null : scale);
+    }
+
+    public void replace(int rowTarget, int rowSource, double scale) {
+        append(REPLACE, rowTarget, rowSource, scale, null);
+    }
+
+    public void replace(int rowTarget, int rowSource, Scalar scale) {
+        append(REPLACE, rowTarget, rowSource, doubleValue(scale), scale instanceof DoubleScalar ? null : scale);
+    }
+
+    private void append(byte code, int target, int source, double scale, Scalar exact) {
+        if (!recording) {
+            return;
+        }
+        if (size == codes.length) {
+            final int capacity = 2 * size;
+            codes = Arrays.copyOf(codes, capacity);
+            targets = Arrays.copyOf(targets, capacity);
+            sources = Arrays.copyOf(sources, capacity);
+            scales = Arrays.copyOf(scales, capacity);
+            if (exactScales != null) {
+                exactScales = Arrays.copyOf(exactScales, capacity);
+            }
+        }
+        codes[size] = code;
+        targets[size] = target;
+        sources[size] = source;
+        scales[size] = scale;
+        if (exact != null) {
+            if (exactScales == null) {
+                exactScales = new Scalar[codes.length];
+            }
+            exactScales[size] = exact;
+        }
+        size++;
+    }
+
+    private static double doubleValue(Scalar s) {
+        return switch (s) {
+            case DoubleScalar d -> d.value;
+            case FractionScalar f -> (double) f.getNumerator() / f.getDenominator();
+            case BigRationalScalar b -> b.doubleValue();
+        };
+    }
+
+    private Scalar scaleOf(int i) {
+        return exactScales != null && exactScales[i] != null ? exactScales[i] : new DoubleScalar(scales[i]);
+    }
+
+    @Override
+    public RowOperation get(int i) {
+        Objects.checkIndex(i, size);
+        return switch (codes[i]) {
+            case SWAP -> new RowSwap(targets[i], sources[i]);
+            case SCALE -> new RowScale(targets[i], scaleOf(i));
+            default -> new RowReplace(targets[i], sources[i], scaleOf(i));
+        };
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // every operation in order, written into one copy of m instead of a new matrix per operation
+    public Matrix apply(Matrix m) {
+        MatrixBuilder builder = new MatrixBuilder(m);
+        apply(builder);
+        return builder.build();
+    }
+
+    public void apply(MatrixBuilder m) {
+        if (!m.isDoubleMatrix()) {
+            for (int i = 0; i < size; i++) {
+                switch (codes[i]) {
+                    case SWAP -> m.swapRows(targets[i], sources[i]);
+                    case SCALE -> m.scaleRow(targets[i], scaleOf(i));
+                    default -> m.addScaledRow(targets[i], sources[i], scaleOf(i));
+                }
+            }
+            return;
+        }
+        final int rows = m.colSize();
+        final int cols = m.rowSize();
+        for (int i = 0; i < size; i++) {
+            checkRow(targets[i], rows);
+            checkRow(sources[i], rows);
+        }
+        final double[] a = m.doubleValues();
+        for (int i = 0; i < size; i++) {
+            final int target = targets[i] * cols;
+            final int source = sources[i] * cols;
+            final double s = scales[i];
+            switch (codes[i]) {
+                case SWAP -> {
+                    for (int col = 0; col < cols; col++) {
+                        final double temp = a[target + col];
+                        a[target + col] = a[source + col];
+                        a[source + col] = temp;
+                    }
+                }
+                case SCALE -> {
+                    for (int col = 0; col < cols; col++) {
+                        a[target + col] *= s;
+                    }
+                }
+                default -> {
+                    for (int col = 0; col < cols; col++) {
+                        a[target + col] += s * a[source + col];
+                    }
+                }
+            }
+        }
+    }
+
+    private static void checkRow(int row, int rows) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException(
+                    String.format("Row index %d out of bounds for matrix with %d rows.", row, rows)
+            );
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package Utilities;
+
+import AbstractSyntaxTree.Matrix;
+import AbstractSyntaxTree.MatrixBuilder;
+
+// Real Schur form T of a square matrix: Hessenberg reduction followed by the Francis double-shift QR iteration.
+// T is upper triangular apart from 2x2 blocks on the diagonal, one per complex conjugate eigenvalue pair.
+public final class Schur {
+    private static final double EPSILON = Math.ulp(1.0);
+    private static final int MAX_ITERATIONS_PER_EIGENVALUE = 100;
+
+    private final double[] t;
+    private final double[] real;
+    private final double[] imaginary;
+    private final int n;
+
+    private Schur(double[] t, double[] real, double[] imaginary, int n) {
+        this.t = t;
+        this.real = real;
+        this.imaginary = imaginary;
+        this.n = n;
+    }
+
+    public static Schur factor(Matrix a) {
+        if (a.colSize() != a.rowSize()) {
+            throw new IllegalArgumentException("Cannot compute eigenvalues of a non-square matrix.");
+        }
+        final int n = a.colSize();
+        double[] h = new MatrixBuilder(a.toDoubleMatrix()).doubleValues();
+        double[] real = new double[n];
+        double[] imaginary = new double[n];
+        hessenberg(h, n);
+        francis(h, n, real, imaginary);
+        // clear what is left of the bulges below the subdiagonal
+        for (int i = 2; i < n; i++) {
+            for (int j = 0; j < i - 1; j++) {
+                h[i * n + j] = 0;
+            }
+        }
+        return new Schur(h, real, imaginary, n);
+    }
+
+    // Householder similarity transformations, column by column
+    private static void hessenberg(double[] h, int n) {
+        double[] ort = new double[n];
+        for (int m = 1; m < n - 1; m++) {
+            double scale = 0;
+            for (int i = m; i < n; i++) {
+                scale += Math.abs(h[i * n + m - 1]);
+            }
+            if (scale == 0) {
+                continue;
+            }
+            double sum = 0;
+            for (int i = n - 1; i >= m; i--) {
+                ort[i] = h[i * n + m - 1] / scale;
+                sum += ort[i] * ort[i];
+            }
+            double g = Math.sqrt(sum);
+            if (ort[m] > 0) {
+                g = -g;
+            }
+            sum -= ort[m] * g;
+            ort[m] -= g;
+            // H = (I - u * u' / sum) * H * (I - u * u' / sum)
+            for (int j = m; j < n; j++) {
+                double f = 0;
+                for (int i = n - 1; i >= m; i--) {
+                    f += ort[i] * h[i * n + j];
+                }
+                f /= sum;
+                for (int i = m; i < n; i++) {
+                    h[i * n + j] -= f * ort[i];
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                double f = 0;
+                for (int j = n - 1; j >= m; j--) {
+                    f += ort[j] * h[i * n + j];
+                }
+                f /= sum;
+                for (int j = m; j < n; j++) {
+                    h[i * n + j] -= f * ort[j];
+                }
+            }
+            h[m * n + m - 1] = scale * g;
+            for (int i = m + 1; i < n; i++) {
+                h[i * n + m - 1] = 0;
+            }
+        }
+    }
+
+    // Wilkinson double shifts with deflation, following the EISPACK hqr routine
+    private static void francis(double[] h, int size, double[] real, double[] imaginary) {
+        double norm = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = Math.max(i - 1, 0); j < size; j++) {
+                norm += Math.abs(h[i * size + j]);
+            }
+        }
+        int n = size - 1;
+        double exshift = 0;
+        double p = 0, q = 0, r = 0, s, z = 0, w, x, y;
+        int iter = 0;
+        while (n >= 0) {
+            // look for a single small subdiagonal element
+            int l = n;
+            while (l > 0) {
+                s = Math.abs(h[(l - 1) * size + l - 1]) + Math.abs(h[l * size + l]);
+                if (s == 0) {
+                    s = norm;
+                }
+                if (Math.abs(h[l * size + l - 1]) < EPSILON * s) {
+                    break;
+                }
+                l--;
+            }
+            if (l == n) {
+                // one root found
+                h[n * size + n] += exshift;
+                real[n] = h[n * size + n];
+                imaginary[n] = 0;
+                if (n > 0) {
+                    h[n * size + n - 1] = 0;
+                }
+                n--;
+                iter = 0;
+            } else if (l == n - 1) {
+                // two roots found
+                w = h[n * size + n - 1] * h[(n - 1) * size + n];
+                p = (h[(n - 1) * size + n - 1] - h[n * size + n]) / 2;
+                q = p * p + w;
+                z = Math.sqrt(Math.abs(q));
+                h[n * size + n] += exshift;
+                h[(n - 1) * size + n - 1] += exshift;
+                x = h[n * size + n];
+                if (q >= 0) {
+                    // real pair: rotate the block to upper triangular
+                    z = p >= 0 ? p + z : p - z;
+                    real[n - 1] = x + z;
+                    real[n] = z != 0 ? x - w / z : real[n - 1];
+                    imaginary[n - 1] = 0;
+                    imaginary[n] = 0;
+                    x = h[n * size + n - 1];
+                    s = Math.abs(x) + Math.abs(z);
+                    p = x / s;
+                    q = z / s;
+                    r = Math.sqrt(p * p + q * q);
+                    p /= r;
+                    q /= r;
+                    for (int j = n - 1; j < size; j++) {
+                        z = h[(n - 1) * size + j];
+                        h[(n - 1) * size + j] = q * z + p * h[n * size + j];
+                        h[n * size + j] = q * h[n * size + j] - p * z;
+                    }
+                    for (int i = 0; i <= n; i++) {
+                        z = h[i * size + n - 1];
+                        h[i * size + n - 1] = q * z + p * h[i * size + n];
+                        h[i * size + n] = q * h[i * size + n] - p * z;
+                    }
+                    h[n * size + n - 1] = 0;
+                } else {
+                    // complex pair: the 2x2 block stays on the diagonal
+                    real[n - 1] = x + p;
+                    real[n] = x + p;
+                    imaginary[n - 1] = z;
+                    imaginary[n] = -z;
+                }
+                if (n > 1) {
+                    h[(n - 1) * size + n - 2] = 0;
+                }
+                n -= 2;
+                iter = 0;
+            } else {
+                // form the shift
+                x = h[n * size + n];
+                y = h[(n - 1) * size + n - 1];
+                w = h[n * size + n - 1] * h[(n - 1) * size + n];
+                // exceptional shifts break up cycles that the Wilkinson shift can fall into
+                if (iter == 10) {
+                    exshift += x;
+                    for (int i = 0; i <= n; i++) {
+                        h[i * size + i] -= x;
+                    }
+                    s = Math.abs(h[n * size + n - 1]) + Math.abs(h[(n - 1) * size + n - 2]);
+                    x = y = 0.75 * s;
+                    w = -0.4375 * s * s;
+                }
+                if (iter == 30) {
+                    s = (y - x) / 2;
+                    s = s * s + w;
+                    if (s > 0) {
+                        s = Math.sqrt(s);
+                        if (y < x) {
+                            s = -s;
+                        }
+                        s = x - w / ((y - x) / 2 + s);
+                        for (int i = 0; i <= n; i++) {
+                            h[i * size + i] -= s;
+                        }
+                        exshift += s;
+                        x = y = w = 0.964;
+                    }
+                }
+                if (++iter > MAX_ITERATIONS_PER_EIGENVALUE) {
+                    throw new IllegalStateException("QR algorithm did not converge.");
+                }
+                // look for two consecutive small subdiagonal elements
+                int m = n - 2;
+                while (m >= l) {
+                    z = h[m * size + m];
+                    r = x - z;
+                    s = y - z;
+                    p = (r * s - w) / h[(m + 1) * size + m] + h[m * size + m + 1];
+                    q = h[(m + 1) * size + m + 1] - z - r - s;
+                    r = h[(m + 2) * size + m + 1];
+                    s = Math.abs(p) + Math.abs(q) + Math.abs(r);
+                    p /= s;
+                    q /= s;
+                    r /= s;
+                    if (m == l) {
+                        break;
+                    }
+                    if (Math.abs(h[m * size + m - 1]) * (Math.abs(q) + Math.abs(r)) < EPSILON
+                            * (Math.abs(p) * (Math.abs(h[(m - 1) * size + m - 1]) + Math.abs(z)
+                            + Math.abs(h[(m + 1) * size + m + 1])))) {
+                        break;
+                    }
+                    m--;
+                }
+                for (int i = m + 2; i <= n; i++) {
+                    h[i * size + i - 2] = 0;
+                    if (i > m + 2) {
+                        h[i * size + i - 3] = 0;
+                    }
+                }
+                // double QR step on rows l..n and columns m..n, chasing the bulge down the subdiagonal
+                for (int k = m; k <= n - 1; k++) {
+                    final boolean notLast = k != n - 1;
+                    x = 0;
+                    if (k != m) {
+                        p = h[k * size + k - 1];
+                        q = h[(k + 1) * size + k - 1];
+                        r = notLast ? h[(k + 2) * size + k - 1] : 0;
+                        x = Math.abs(p) + Math.abs(q) + Math.abs(r);
+                        if (x == 0) {
+                            continue;
+                        }
+                        p /= x;
+                        q /= x;
+                        r /= x;
+                    }
+                    s = Math.sqrt(p * p + q * q + r * r);
+                    if (p < 0) {
+                        s = -s;
+                    }
+                    if (s == 0) {
+                        continue;
+                    }
+                    if (k != m) {
+                        h[k * size + k - 1] = -s * x;
+                    } else if (l != m) {
+                        h[k * size + k - 1] = -h[k * size + k - 1];
+                    }
+                    p += s;
+                    x = p / s;
+                    y = q / s;
+                    z = r / s;
+                    q /= p;
+                    r /= p;
+                    for (int j = k; j < size; j++) {
+                        p = h[k * size + j] + q * h[(k + 1) * size + j];
+                        if (notLast) {
+                            p += r * h[(k + 2) * size + j];
+                            h[(k + 2) * size + j] -= p * z;
+                        }
+                        h[k * size + j] -= p * x;
+                        h[(k + 1) * size + j] -= p * y;
+                    }
+                    for (int i = 0; i <= Math.min(n, k + 3); i++) {
+                        p = x * h[i * size + k] + y * h[i * size + k + 1];
+                        if (notLast) {
+                            p += z * h[i * size + k + 2];
+                            h[i * size + k + 2] -= p * r;
+                        }
+                        h[i * size + k] -= p;
+                        h[i * size + k + 1] -= p * q;
+                    }
+                }
+            }
+        }
+    }
+
+    public Matrix t() {
+        return new Matrix(t.clone(), n, n);
+    }
+
+    public boolean hasComplexEigenvalues() {
+        for (double v : imaginary) {
+            if (v != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public double[] realEigenvalues() {
+        return real.clone();
+    }
+
+    public double[] imaginaryEigenvalues() {
+        return imaginary.clone();
+    }
+}
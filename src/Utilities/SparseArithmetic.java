@@ -0,0 +1,204 @@
+package Utilities;
+
+import AbstractSyntaxTree.Matrix;
+
+import java.util.Arrays;
+
+// Transposes, sums and products of matrices kept in compressed sparse rows (CSR). Compressed sparse columns need no
+// format of their own: the CSC arrays of a matrix are the CSR arrays of its transpose. A sparse result that fills in
+// past DENSITY comes back dense, since it no longer saves anything and the dense kernels are faster.
+public final class SparseArithmetic {
+    public static final double DENSITY = 0.1;
+
+    private SparseArithmetic() {}
+
+    public static Matrix transpose(Matrix a) {
+        final int[] rowStarts = a.sparseRowStarts();
+        final int[] columns = a.sparseColumns();
+        final double[] entries = a.sparseEntries();
+        final int rows = a.colSize();
+        final int cols = a.rowSize();
+        // a counting sort of the entries by column, which keeps each new row in increasing order of old row
+        int[] starts = new int[cols + 1];
+        for (int col : columns) {
+            starts[col + 1]++;
+        }
+        for (int col = 0; col < cols; col++) {
+            starts[col + 1] += starts[col];
+        }
+        int[] next = Arrays.copyOf(starts, cols);
+        int[] newColumns = new int[columns.length];
+        double[] newEntries = new double[entries.length];
+        for (int row = 0; row < rows; row++) {
+            for (int k = rowStarts[row]; k < rowStarts[row + 1]; k++) {
+                final int p = next[columns[k]]++;
+                newColumns[p] = row;
+                newEntries[p] = entries[k];
+            }
+        }
+        return new Matrix(starts, newColumns, newEntries, rows, cols);
+    }
+
+    // a + sign * b for two sparse matrices of one shape
+    public static Matrix add(Matrix a, Matrix b, double sign) {
+        final int[] aStarts = a.sparseRowStarts(), aColumns = a.sparseColumns();
+        final int[] bStarts = b.sparseRowStarts(), bColumns = b.sparseColumns();
+        final double[] aEntries = a.sparseEntries(), bEntries = b.sparseEntries();
+        final int rows = a.colSize();
+        Builder sum = new Builder(rows, aEntries.length + bEntries.length);
+        for (int row = 0; row < rows; row++) {
+            int k = aStarts[row], l = bStarts[row];
+            final int aEnd = aStarts[row + 1], bEnd = bStarts[row + 1];
+            while (k < aEnd || l < bEnd) {
+                if (l == bEnd || (k < aEnd && aColumns[k] < bColumns[l])) {
+                    sum.add(aColumns[k], aEntries[k++]);
+                } else if (k == aEnd || bColumns[l] < aColumns[k]) {
+                    sum.add(bColumns[l], sign * bEntries[l++]);
+                } else {
+                    sum.add(aColumns[k], aEntries[k++] + sign * bEntries[l++]);
+                }
+            }
+            sum.endRow();
+        }
+        return sum.build(a.rowSize());
+    }
+
+    // D * a (rows) or a * D (columns) for the diagonal D given by its entries, on the same structure
+    public static Matrix scale(Matrix a, double[] diagonal, boolean rows) {
+        final int[] rowStarts = a.sparseRowStarts(), columns = a.sparseColumns();
+        final double[] entries = a.sparseEntries();
+        Builder ret = new Builder(a.colSize(), entries.length);
+        for (int row = 0; row < a.colSize(); row++) {
+            for (int k = rowStarts[row]; k < rowStarts[row + 1]; k++) {
+                ret.add(columns[k], entries[k] * (rows ? diagonal[row] : diagonal[columns[k]]));
+            }
+            ret.endRow();
+        }
+        return ret.buildSparse(a.rowSize());
+    }
+
+    // a * b where either is sparse; a sparse product of two sparse matrices, otherwise a dense one
+    public static Matrix multiply(Matrix a, Matrix b) {
+        if (a.isSparseMatrix() && b.isSparseMatrix()) {
+            return multiplySparse(a, b);
+        }
+        final int m = a.colSize();
+        final int k = a.rowSize();
+        final int n = b.rowSize();
+        double[] c = new double[Math.multiplyExact(m, n)];
+        if (a.isSparseMatrix()) {
+            final int[] rowStarts = a.sparseRowStarts(), columns = a.sparseColumns();
+            final double[] entries = a.sparseEntries();
+            final double[] dense = b.toDoubleMatrix().doubleValues();
+            for (int row = 0; row < m; row++) {
+                for (int p = rowStarts[row]; p < rowStarts[row + 1]; p++) {
+                    final double s = entries[p];
+                    final int from = columns[p] * n;
+                    for (int col = 0; col < n; col++) {
+                        c[row * n + col] += s * dense[from + col];
+                    }
+                }
+            }
+        } else {
+            final int[] rowStarts = b.sparseRowStarts(), columns = b.sparseColumns();
+            final double[] entries = b.sparseEntries();
+            final double[] dense = a.toDoubleMatrix().doubleValues();
+            for (int row = 0; row < m; row++) {
+                for (int j = 0; j < k; j++) {
+                    final double s = dense[row * k + j];
+                    if (s == 0) {
+                        continue;
+                    }
+                    for (int p = rowStarts[j]; p < rowStarts[j + 1]; p++) {
+                        c[row * n + columns[p]] += s * entries[p];
+                    }
+                }
+            }
+        }
+        return new Matrix(c, n, m);
+    }
+
+    // row by row (Gustavson): row i of a * b is the sum of the rows of b that row i of a picks out, scattered into
+    // a dense accumulator that only the columns it touched are read back from
+    private static Matrix multiplySparse(Matrix a, Matrix b) {
+        final int[] aStarts = a.sparseRowStarts(), aColumns = a.sparseColumns();
+        final int[] bStarts = b.sparseRowStarts(), bColumns = b.sparseColumns();
+        final double[] aEntries = a.sparseEntries(), bEntries = b.sparseEntries();
+        final int rows = a.colSize();
+        final int n = b.rowSize();
+        double[] accumulator = new double[n];
+        int[] touched = new int[n];
+        boolean[] seen = new boolean[n];
+        Builder product = new Builder(rows, aEntries.length + bEntries.length);
+        for (int row = 0; row < rows; row++) {
+            int count = 0;
+            for (int p = aStarts[row]; p < aStarts[row + 1]; p++) {
+                final double s = aEntries[p];
+                final int j = aColumns[p];
+                for (int q = bStarts[j]; q < bStarts[j + 1]; q++) {
+                    final int col = bColumns[q];
+                    if (!seen[col]) {
+                        seen[col] = true;
+                        touched[count++] = col;
+                    }
+                    accumulator[col] += s * bEntries[q];
+                }
+            }
+            Arrays.sort(touched, 0, count);
+            for (int t = 0; t < count; t++) {
+                final int col = touched[t];
+                product.add(col, accumulator[col]);
+                accumulator[col] = 0;
+                seen[col] = false;
+            }
+            product.endRow();
+        }
+        return product.build(n);
+    }
+
+    // a sparse matrix written one row at a time, columns increasing within a row; zeros are left out
+    static final class Builder {
+        private final int[] rowStarts;
+        private int[] columns;
+        private double[] entries;
+        private int rows = 0;
+        private int size = 0;
+
+        Builder(int rows, int capacity) {
+            this.rowStarts = new int[rows + 1];
+            this.columns = new int[Math.max(capacity, 16)];
+            this.entries = new double[columns.length];
+        }
+
+        void add(int col, double value) {
+            if (value == 0) {
+                return;
+            }
+            if (size == columns.length) {
+                columns = Arrays.copyOf(columns, 2 * size);
+                entries = Arrays.copyOf(entries, 2 * size);
+            }
+            columns[size] = col;
+            entries[size] = value;
+            size++;
+        }
+
+        void endRow() {
+            rowStarts[++rows] = size;
+        }
+
+        // the matrix, dense if it has come out denser than DENSITY
+        Matrix build(int width) {
+            Matrix m = buildSparse(width);
+            final long positions = (long) width * rows;
+            if (positions <= Integer.MAX_VALUE && size > DENSITY * positions) {
+                return new Matrix(m.doubleValues(), width, rows);
+            }
+            return m;
+        }
+
+        Matrix buildSparse(int width) {
+            return new Matrix(rowStarts, Arrays.copyOf(columns, size), Arrays.copyOf(entries, size), width, rows);
+        }
+    }
+}
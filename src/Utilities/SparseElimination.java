@@ -0,0 +1,316 @@
+package Utilities;
+
+import AbstractSyntaxTree.*;
+
+import java.util.Arrays;
+
+// Gaussian elimination for sparse matrices, on rows kept as (column, value) arrays so that the work and memory grow
+// with the non-zero entries rather than with rows * columns. Rows wait in a bucket for the column of their leading
+// entry. Each column's pivot is chosen for fill first: among the rows whose leading entry is within THRESHOLD of the
+// largest in the column, the one with the fewest entries (Markowitz), since every row it is added to picks up its
+// pattern. Only rows are reordered, so the results are the usual echelon forms of the matrix.
+public final class SparseElimination {
+    private static final double EPSILON = Math.pow(10, -9);
+    private static final double THRESHOLD = 0.1;
+    // a sum that cancels to within this much of the terms it came from is rounding, and left out rather than kept
+    private static final double CANCELLATION = 1e-14;
+
+    private final Matrix efResult;
+    private final Matrix rrefResult;
+    private final Scalar determinant;
+    private final RowOperationLog efOperations;
+    private final RowOperationLog rrefOperations;
+
+    private SparseElimination(
+            Matrix efResult,
+            Matrix rrefResult,
+            Scalar determinant,
+            RowOperationLog efOperations,
+            RowOperationLog rrefOperations) {
+        this.efResult = efResult;
+        this.rrefResult = rrefResult;
+        this.determinant = determinant;
+        this.efOperations = efOperations;
+        this.rrefOperations = rrefOperations;
+    }
+
+    public Matrix efResult() {
+        return efResult;
+    }
+
+    public Matrix rrefResult() {
+        return rrefResult;
+    }
+
+    public Scalar determinant() {
+        return determinant;
+    }
+
+    public RowOperationLog efOperations() {
+        return efOperations;
+    }
+
+    public RowOperationLog rrefOperations() {
+        return rrefOperations;
+    }
+
+    // without record, the operation logs are left out
+    public static SparseElimination reduce(Matrix m, boolean reduced, boolean record) {
+        final int rows = m.colSize();
+        final int cols = m.rowSize();
+        final int[] rowStarts = m.sparseRowStarts();
+        final int[] columns = m.sparseColumns();
+        final double[] entries = m.sparseEntries();
+        Rows a = new Rows(rows);
+        for (int row = 0; row < rows; row++) {
+            a.load(row, columns, entries, rowStarts[row], rowStarts[row + 1]);
+        }
+
+        // rows by the column of their leading entry, as linked lists through next
+        int[] head = new int[cols];
+        Arrays.fill(head, -1);
+        int[] next = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            if (a.size[row] > 0) {
+                next[row] = head[a.columns[row][0]];
+                head[a.columns[row][0]] = row;
+            }
+        }
+        // at[position] is the row now at that position and where[row] its inverse; swaps only move these
+        int[] at = new int[rows];
+        int[] where = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            at[row] = row;
+            where[row] = row;
+        }
+        int[] pivotColumns = new int[Math.min(rows, cols)];
+        int[] candidates = new int[rows];
+        RowOperationLog efOperations = new RowOperationLog(record);
+        double determinant = 1;
+        int rank = 0;
+        for (int col = 0; col < cols && rank < rows; col++) {
+            int count = 0;
+            double largest = 0;
+            for (int row = head[col]; row >= 0; row = next[row]) {
+                candidates[count++] = row;
+                largest = Math.max(largest, Math.abs(a.entries[row][0]));
+            }
+            head[col] = -1;
+            if (count == 0) {
+                continue;
+            }
+            if (largest < EPSILON) {
+                // no usable pivot: the column is zero in these rows
+                for (int i = 0; i < count; i++) {
+                    final int row = candidates[i];
+                    a.dropLeading(row);
+                    if (a.size[row] > 0) {
+                        next[row] = head[a.columns[row][0]];
+                        head[a.columns[row][0]] = row;
+                    }
+                }
+                continue;
+            }
+            int pivot = -1;
+            for (int i = 0; i < count; i++) {
+                final int row = candidates[i];
+                final double magnitude = Math.abs(a.entries[row][0]);
+                if (magnitude >= THRESHOLD * largest && (pivot < 0 || a.size[row] < a.size[pivot]
+                        || (a.size[row] == a.size[pivot] && magnitude > Math.abs(a.entries[pivot][0])))) {
+                    pivot = row;
+                }
+            }
+            final int from = where[pivot];
+            if (from != rank) {
+                efOperations.swap(rank, from);
+                determinant = -determinant;
+                final int displaced = at[rank];
+                at[rank] = pivot;
+                at[from] = displaced;
+                where[pivot] = rank;
+                where[displaced] = from;
+            }
+            final double value = a.entries[pivot][0];
+            for (int i = 0; i < count; i++) {
+                final int row = candidates[i];
+                if (row == pivot) {
+                    continue;
+                }
+                final double factor = a.entries[row][0] / value;
+                efOperations.replace(where[row], rank, -factor);
+                a.addScaled(row, pivot, -factor, col);
+                if (a.size[row] > 0) {
+                    next[row] = head[a.columns[row][0]];
+                    head[a.columns[row][0]] = row;
+                }
+            }
+            determinant *= value;
+            pivotColumns[rank++] = col;
+        }
+        final Scalar det = rows != cols ? null : new DoubleScalar(rank == rows ? determinant : 0);
+        final Matrix ef = a.build(at, cols);
+        if (!reduced) {
+            return new SparseElimination(ef, null, det, record ? efOperations : null, null);
+        }
+
+        // back substitution from the last pivot up. Row k then has no entries left in the pivot columns after its
+        // own, so adding it above only fills in free columns, and the rows with an entry in pivot column k can be
+        // listed once from the echelon form
+        int[] pivotOf = new int[cols];
+        Arrays.fill(pivotOf, -1);
+        for (int k = 0; k < rank; k++) {
+            pivotOf[pivotColumns[k]] = k;
+        }
+        int[] aboveStarts = new int[rank + 1];
+        for (int i = 0; i < rank; i++) {
+            final int row = at[i];
+            for (int j = 1; j < a.size[row]; j++) {
+                final int k = pivotOf[a.columns[row][j]];
+                if (k > i) {
+                    aboveStarts[k + 1]++;
+                }
+            }
+        }
+        for (int k = 0; k < rank; k++) {
+            aboveStarts[k + 1] += aboveStarts[k];
+        }
+        int[] above = new int[aboveStarts[rank]];
+        int[] fill = Arrays.copyOf(aboveStarts, rank);
+        for (int i = 0; i < rank; i++) {
+            final int row = at[i];
+            for (int j = 1; j < a.size[row]; j++) {
+                final int k = pivotOf[a.columns[row][j]];
+                if (k > i) {
+                    above[fill[k]++] = i;
+                }
+            }
+        }
+        RowOperationLog rrefOperations = new RowOperationLog(record);
+        for (int k = rank - 1; k >= 0; k--) {
+            final int pivot = at[k];
+            final double value = a.entries[pivot][0];
+            if (value != 1) {
+                rrefOperations.scale(k, 1 / value);
+                a.scale(pivot, 1 / value);
+            }
+            for (int p = aboveStarts[k]; p < aboveStarts[k + 1]; p++) {
+                final int row = at[above[p]];
+                final double factor = a.valueAt(row, pivotColumns[k]);
+                if (factor == 0) {
+                    continue;
+                }
+                rrefOperations.replace(above[p], k, -factor);
+                a.addScaled(row, pivot, -factor, pivotColumns[k]);
+            }
+        }
+        return new SparseElimination(
+                ef,
+                a.build(at, cols),
+                det,
+                record ? efOperations : null,
+                record ? rrefOperations : null);
+    }
+
+    // the working rows: row r is columns[r] and entries[r] up to size[r], columns increasing
+    private static final class Rows {
+        final int[][] columns;
+        final double[][] entries;
+        final int[] size;
+        // where sums are merged before being copied back to a row of their own size
+        private int[] mergedColumns = new int[16];
+        private double[] mergedEntries = new double[16];
+
+        Rows(int rows) {
+            this.columns = new int[rows][];
+            this.entries = new double[rows][];
+            this.size = new int[rows];
+        }
+
+        void load(int row, int[] cols, double[] values, int start, int end) {
+            int n = 0;
+            for (int k = start; k < end; k++) {
+                if (values[k] != 0) {
+                    n++;
+                }
+            }
+            columns[row] = new int[n];
+            entries[row] = new double[n];
+            for (int k = start; k < end; k++) {
+                if (values[k] != 0) {
+                    columns[row][size[row]] = cols[k];
+                    entries[row][size[row]++] = values[k];
+                }
+            }
+        }
+
+        void dropLeading(int row) {
+            size[row]--;
+            columns[row] = Arrays.copyOfRange(columns[row], 1, size[row] + 1);
+            entries[row] = Arrays.copyOfRange(entries[row], 1, size[row] + 1);
+        }
+
+        void scale(int row, double s) {
+            for (int j = 0; j < size[row]; j++) {
+                entries[row][j] *= s;
+            }
+        }
+
+        double valueAt(int row, int col) {
+            final int j = Arrays.binarySearch(columns[row], 0, size[row], col);
+            return j >= 0 ? entries[row][j] : 0;
+        }
+
+        // target += s * source, with the entry in column eliminated set to exactly zero and left out
+        void addScaled(int target, int source, double s, int eliminated) {
+            final int[] tc = columns[target], sc = columns[source];
+            final double[] tv = entries[target], sv = entries[source];
+            final int tn = size[target], sn = size[source];
+            if (mergedColumns.length < tn + sn) {
+                mergedColumns = new int[2 * (tn + sn)];
+                mergedEntries = new double[mergedColumns.length];
+            }
+            int n = 0, i = 0, j = 0;
+            while (i < tn || j < sn) {
+                final int col;
+                double t = 0, u = 0;
+                if (j == sn || (i < tn && tc[i] < sc[j])) {
+                    col = tc[i];
+                    t = tv[i++];
+                } else if (i == tn || sc[j] < tc[i]) {
+                    col = sc[j];
+                    u = s * sv[j++];
+                } else {
+                    col = tc[i];
+                    t = tv[i++];
+                    u = s * sv[j++];
+                }
+                final double sum = t + u;
+                if (col == eliminated || sum == 0
+                        || Math.abs(sum) <= CANCELLATION * (Math.abs(t) + Math.abs(u))) {
+                    continue;
+                }
+                mergedColumns[n] = col;
+                mergedEntries[n++] = sum;
+            }
+            columns[target] = Arrays.copyOf(mergedColumns, n);
+            entries[target] = Arrays.copyOf(mergedEntries, n);
+            size[target] = n;
+        }
+
+        // the rows in the order at lists them
+        Matrix build(int[] at, int width) {
+            int total = 0;
+            for (int row : at) {
+                total += size[row];
+            }
+            SparseArithmetic.Builder ret = new SparseArithmetic.Builder(at.length, total);
+            for (int row : at) {
+                for (int j = 0; j < size[row]; j++) {
+                    ret.add(columns[row][j], entries[row][j]);
+                }
+                ret.endRow();
+            }
+            return ret.build(width);
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package Utilities;
+
+import AbstractSyntaxTree.*;
+import AbstractSyntaxTree.Boolean;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import static java.nio.file.StandardOpenOption.*;
+
+// The snapshot file behind SNAPSHOT and RESTORE. A 16-byte little-endian header
+//     "JCWS" | version | unused (3) | directory offset (long)
+// is followed by one section per variable and then the directory: a count, and a name, offset and length per
+// variable. Matrices inside a section use the MatrixFile encoding, and row reduction results keep every cached
+// part, so nothing has to be recomputed. Sections are copied out of the file when the snapshot is read, so later
+// writes to it cannot change them, but only decoded when a variable is first used.
+public final class WorkspaceFile {
+    private static final int MAGIC = 'J' | 'C' << 8 | 'W' << 16 | 'S' << 24;
+    private static final byte VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+
+    private static final byte SCALAR = 0, MATRIX = 1, VECTOR_LIST = 2, ROW_REDUCTION = 3, BOOLEAN = 4, TEXT = 5;
+    private static final byte DOUBLE = 0, FRACTION = 1, RATIONAL = 2;
+    private static final byte SWAP = 0, SCALE = 1, REPLACE = 2;
+    private static final int EF = 1, RREF = 2, DETERMINANT = 4, EF_OPERATIONS = 8, RREF_OPERATIONS = 16, LU = 32;
+
+    private WorkspaceFile() {}
+
+    public static void write(Map<String, Value> variables, Path path) throws IOException {
+        // matrix layouts are measured once and reused while encoding
+        Map<Matrix, MatrixFile.Layout> layouts = new IdentityHashMap<>();
+        Map<String, Value> sorted = new TreeMap<>(variables);
+        try (FileChannel channel = FileChannel.open(path, CREATE, TRUNCATE_EXISTING, READ, WRITE)) {
+            List<byte[]> names = new ArrayList<>(sorted.size());
+            List<long[]> sections = new ArrayList<>(sorted.size());
+            long position = HEADER_BYTES;
+            long directorySize = 4;
+            for (Map.Entry<String, Value> variable : sorted.entrySet()) {
+                final long size = sizeOf(variable.getValue(), layouts);
+                if (size > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException(String.format(
+                            "%s is too large to snapshot.", variable.getKey()
+                    ));
+                }
+                ByteBuffer out = MatrixFile.map(channel, FileChannel.MapMode.READ_WRITE, position, size);
+                putValue(out, variable.getValue(), layouts);
+                byte[] name = variable.getKey().getBytes(StandardCharsets.UTF_8);
+                names.add(name);
+                sections.add(new long[] {position, size});
+                directorySize += 4 + name.length + 16;
+                position += size;
+            }
+
+            ByteBuffer directory = MatrixFile.map(channel, FileChannel.MapMode.READ_WRITE, position, directorySize);
+            directory.putInt(names.size());
+            for (int i = 0; i < names.size(); i++) {
+                MatrixFile.putInteger(directory, names.get(i));
+                directory.putLong(sections.get(i)[0]).putLong(sections.get(i)[1]);
+            }
+            MatrixFile.map(channel, FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES)
+                    .putInt(MAGIC)
+                    .put(VERSION)
+                    .put(new byte[3])
+                    .putLong(position);
+        }
+    }
+
+    // every variable in the snapshot, each decoded from its copied section the first time it is asked for
+    public static Map<String, Supplier<Value>> read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            final long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw notASnapshot(path);
+            }
+            ByteBuffer header = MatrixFile.map(channel, FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC) {
+                throw notASnapshot(path);
+            }
+            final byte version = header.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException(String.format(
+                        "Unsupported snapshot version %d in %s.", version, path
+                ));
+            }
+            header.position(8);
+            final long directoryOffset = header.getLong();
+            if (directoryOffset < HEADER_BYTES || directoryOffset > size || size - directoryOffset > Integer.MAX_VALUE) {
+                throw notASnapshot(path);
+            }
+
+            ByteBuffer directory = MatrixFile.map(
+                    channel, FileChannel.MapMode.READ_ONLY, directoryOffset, size - directoryOffset
+            );
+            Map<String, Supplier<Value>> variables = new LinkedHashMap<>();
+            try {
+                final int count = directory.getInt();
+                for (int i = 0; i < count; i++) {
+                    byte[] name = new byte[directory.getInt()];
+                    directory.get(name);
+                    final long offset = directory.getLong();
+                    final long length = directory.getLong();
+                    if (offset < HEADER_BYTES || length < 0 || length > Integer.MAX_VALUE
+                            || offset + length > directoryOffset) {
+                        throw notASnapshot(path);
+                    }
+                    ByteBuffer section = readSection(channel, offset, (int) length, path);
+                    variables.put(new String(name, StandardCharsets.UTF_8), () -> {
+                        try {
+                            return getValue(section.duplicate().order(ByteOrder.LITTLE_ENDIAN), path);
+                        } catch (BufferUnderflowException | NegativeArraySizeException | NumberFormatException
+                                 | ArithmeticException e) {
+                            throw notASnapshot(path);
+                        }
+                    });
+                }
+            } catch (BufferUnderflowException | NegativeArraySizeException e) {
+                throw notASnapshot(path);
+            }
+            return variables;
+        }
+    }
+
+    // a mapping would follow whatever is written to the file afterwards, so the bytes are copied to the heap
+    private static ByteBuffer readSection(FileChannel channel, long offset, int length, Path path) throws IOException {
+        ByteBuffer section = ByteBuffer.allocate(length);
+        while (section.hasRemaining()) {
+            if (channel.read(section, offset + section.position()) < 0) {
+                throw notASnapshot(path);
+            }
+        }
+        return section.flip();
+    }
+
+    // Values
+
+    private static long sizeOf(Value value, Map<Matrix, MatrixFile.Layout> layouts) {
+        return 1 + switch (value) {
+            case Scalar s -> sizeOf(s);
+            case Matrix m -> sizeOf(m, layouts);
+            case VectorList vs -> 4 + sizeOf(vs.toMatrix(), layouts);
+            case RowReductionResult rrr -> {
+                long size = 1 + sizeOf(rrr.original(), layouts);
+                if (rrr.efResult() != null) {
+                    size += sizeOf(rrr.efResult(), layouts);
+                }
+                if (rrr.rrefResult() != null) {
+                    size += sizeOf(rrr.rrefResult(), layouts);
+                }
+                if (rrr.determinant() != null) {
+                    size += sizeOf(rrr.determinant());
+                }
+                if (rrr.efOperations() != null) {
+                    size += sizeOf(rrr.efOperations());
+                }
+                if (rrr.rrefOperations() != null) {
+                    size += sizeOf(rrr.rrefOperations());
+                }
+                if (savedLU(rrr) != null) {
+                    LU lu = rrr.lu();
+                    size += sizeOf(lu.factors(), layouts) + 4 + 4L * lu.size() + 1 + sizeOf(lu.determinant());
+                }
+                yield size;
+            }
+            case Boolean b -> 1;
+            case Text t -> 4 + t.getValue().getBytes(StandardCharsets.UTF_8).length;
+        };
+    }
+
+    // band factors record their row swaps step by step, which a loaded factorization would take for a dense one's
+    // permutation; they are left out, to be factored again when next needed
+    private static LU savedLU(RowReductionResult rrr) {
+        return rrr.lu() != null && !rrr.lu().factors().isBandMatrix() ? rrr.lu() : null;
+    }
+
+    private static void putValue(ByteBuffer out, Value value, Map<Matrix, MatrixFile.Layout> layouts) {
+        switch (value) {
+            case Scalar s -> putScalar(out.put(SCALAR), s);
+            case Matrix m -> putMatrix(out.put(MATRIX), m, layouts);
+            case VectorList vs -> putMatrix(out.put(VECTOR_LIST).putInt(vs.size()), vs.toMatrix(), layouts);
+            case RowReductionResult rrr -> {
+                int parts = 0;
+                parts |= rrr.efResult() != null ? EF : 0;
+                parts |= rrr.rrefResult() != null ? RREF : 0;
+                parts |= rrr.determinant() != null ? DETERMINANT : 0;
+                parts |= rrr.efOperations() != null ? EF_OPERATIONS : 0;
+                parts |= rrr.rrefOperations() != null ? RREF_OPERATIONS : 0;
+                parts |= savedLU(rrr) != null ? LU : 0;
+                out.put(ROW_REDUCTION).put((byte) parts);
+                putMatrix(out, rrr.original(), layouts);
+                if (rrr.efResult() != null) {
+                    putMatrix(out, rrr.efResult(), layouts);
+                }
+                if (rrr.rrefResult() != null) {
+                    putMatrix(out, rrr.rrefResult(), layouts);
+                }
+                if (rrr.determinant() != null) {
+                    putScalar(out, rrr.determinant());
+                }
+                if (rrr.efOperations() != null) {
+                    putOperations(out, rrr.efOperations());
+                }
+                if (rrr.rrefOperations() != null) {
+                    putOperations(out, rrr.rrefOperations());
+                }
+                if (savedLU(rrr) != null) {
+                    LU lu = rrr.lu();
+                    putMatrix(out, lu.factors(), layouts);
+                    out.putInt(lu.size());
+                    for (int pivot : lu.pivots()) {
+                        out.putInt(pivot);
+                    }
+                    out.put((byte) (lu.isSingular() ? 1 : 0));
+                    putScalar(out, lu.determinant());
+                }
+            }
+            case Boolean b -> out.put(BOOLEAN).put((byte) (b.getValue() ? 1 : 0));
+            case Text t -> MatrixFile.putInteger(out.put(TEXT), t.getValue().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Value getValue(ByteBuffer in, Path path) {
+        return switch (in.get()) {
+            case SCALAR -> getScalar(in, path);
+            case MATRIX -> MatrixFile.decode(in, path);
+            case VECTOR_LIST -> {
+                final int count = in.getInt();
+                Matrix columns = MatrixFile.decode(in, path);
+                List<Vector> vectors = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    vectors.add(columns.getColumnVector(i));
+                }
+                yield new VectorList(vectors);
+            }
+            case ROW_REDUCTION -> {
+                final int parts = in.get();
+                Matrix original = MatrixFile.decode(in, path);
+                Matrix ef = (parts & EF) != 0 ? MatrixFile.decode(in, path) : null;
+                Matrix rref = (parts & RREF) != 0 ? MatrixFile.decode(in, path) : null;
+                Scalar determinant = (parts & DETERMINANT) != 0 ? getScalar(in, path) : null;
+                RowOperationLog efOperations = (parts & EF_OPERATIONS) != 0 ? getOperations(in, path) : null;
+                RowOperationLog rrefOperations = (parts & RREF_OPERATIONS) != 0 ? getOperations(in, path) : null;
+                LU lu = null;
+                if ((parts & LU) != 0) {
+                    Matrix factors = MatrixFile.decode(in, path);
+                    int[] pivots = new int[in.getInt()];
+                    for (int i = 0; i < pivots.length; i++) {
+                        pivots[i] = in.getInt();
+                    }
+                    final boolean singular = in.get() != 0;
+                    lu = new LU(factors, pivots, singular, getScalar(in, path));
+                }
+                yield new RowReductionResult(original, ef, rref, determinant, efOperations, rrefOperations, lu);
+            }
+            case BOOLEAN -> new Boolean(in.get() != 0);
+            case TEXT -> {
+                byte[] text = new byte[in.getInt()];
+                in.get(text);
+                yield new Text(new String(text, StandardCharsets.UTF_8));
+            }
+            default -> throw notASnapshot(path);
+        };
+    }
+
+    private static long sizeOf(Matrix m, Map<Matrix, MatrixFile.Layout> layouts) {
+        return layouts.computeIfAbsent(m, MatrixFile::layout).size();
+    }
+
+    private static void putMatrix(ByteBuffer out, Matrix m, Map<Matrix, MatrixFile.Layout> layouts) {
+        MatrixFile.encode(m, layouts.computeIfAbsent(m, MatrixFile::layout), out);
+    }
+
+    // Scalars and row operations
+
+    private static long sizeOf(Scalar s) {
+        return 1 + switch (s) {
+            case DoubleScalar d -> 8;
+            case FractionScalar f -> 8;
+            case BigRationalScalar b -> 8 + b.getNumerator().toByteArray().length
+                    + b.getDenominator().toByteArray().length;
+        };
+    }
+
+    private static void putScalar(ByteBuffer out, Scalar s) {
+        switch (s) {
+            case DoubleScalar d -> out.put(DOUBLE).putDouble(d.value);
+            case FractionScalar f -> out.put(FRACTION).putInt(f.getNumerator()).putInt(f.getDenominator());
+            case BigRationalScalar b -> {
+                out.put(RATIONAL);
+                MatrixFile.putInteger(out, b.getNumerator().toByteArray());
+                MatrixFile.putInteger(out, b.getDenominator().toByteArray());
+            }
+        }
+    }
+
+    private static Scalar getScalar(ByteBuffer in, Path path) {
+        return switch (in.get()) {
+            case DOUBLE -> new DoubleScalar(in.getDouble());
+            case FRACTION -> new FractionScalar(in.getInt(), in.getInt());
+            case RATIONAL -> {
+                BigInteger numerator = MatrixFile.getInteger(in);
+                yield BigRationalScalar.valueOf(numerator, MatrixFile.getInteger(in));
+            }
+            default -> throw notASnapshot(path);
+        };
+    }
+
+    private static long sizeOf(List<RowOperation> operations) {
+        long size = 4;
+        for (RowOperation operation : operations) {
+            size += 1 + switch (operation) {
+                case RowSwap swap -> 8;
+                case RowScale scale -> 4 + sizeOf(scale.scale);
+                case RowReplace replace -> 8 + sizeOf(replace.scale);
+            };
+        }
+        return size;
+    }
+
+    private static void putOperations(ByteBuffer out, List<RowOperation> operations) {
+        out.putInt(operations.size());
+        for (RowOperation operation : operations) {
+            switch (operation) {
+                case RowSwap swap -> out.put(SWAP).putInt(swap.r1).putInt(swap.r2);
+                case RowScale scale -> putScalar(out.put(SCALE).putInt(scale.row), scale.scale);
+                case RowReplace replace -> putScalar(
+                        out.put(REPLACE).putInt(replace.rowTarget).putInt(replace.rowSource),
+                        replace.scale
+                );
+            }
+        }
+    }
+
+    private static RowOperationLog getOperations(ByteBuffer in, Path path) {
+        final int count = in.getInt();
+        if (count < 0 || count > in.remaining()) {
+            throw notASnapshot(path);
+        }
+        RowOperationLog operations = new RowOperationLog();
+        for (int i = 0; i < count; i++) {
+            switch (in.get()) {
+                case SWAP -> operations.swap(in.getInt(), in.getInt());
+                case SCALE -> {
+                    final int row = in.getInt();
+                    operations.scale(row, getScalar(in, path));
+                }
+                case REPLACE -> {
+                    final int target = in.getInt();
+                    final int source = in.getInt();
+                    operations.replace(target, source, getScalar(in, path));
+                }
+                default -> throw notASnapshot(path);
+            }
+        }
+        return operations;
+    }
+
+    private static IllegalArgumentException notASnapshot(Path path) {
+        return new IllegalArgumentException(String.format("%s is not a valid snapshot.", path));
+    }
+}
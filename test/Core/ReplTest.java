@@ -0,0 +1,61 @@
+package Core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class ReplTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private InputStream in;
+    private PrintStream out;
+
+    @Before
+    public void saveStreams() {
+        in = System.in;
+        out = System.out;
+    }
+
+    @After
+    public void restoreStreams() {
+        System.setIn(in);
+        System.setOut(out);
+    }
+
+    private String run(String input) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        System.setIn(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+        System.setOut(new PrintStream(output, true, StandardCharsets.UTF_8));
+        Repl.repl();
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void bracketInQuotedPathDoesNotWaitForContinuation() {
+        Path path = folder.getRoot().toPath().resolve("a(b[c.bin");
+        String output = run(String.format("SAVE([1 2 | 3 4], \"%s\")\nLOAD(\"%s\")\n", path, path));
+        assertFalse(output, output.contains(".. "));
+        assertTrue(Files.exists(path));
+        assertTrue(output, output.contains("|  3  4  ]"));
+    }
+
+    @Test
+    public void openBracketStillContinues() {
+        String output = run("[1 2 |\n3 4]\n");
+        assertTrue(output, output.contains(".. "));
+        assertTrue(output, output.contains("|  3  4  ]"));
+    }
+}
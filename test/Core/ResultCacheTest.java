@@ -0,0 +1,19 @@
+package Core;
+
+import AbstractSyntaxTree.*;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ResultCacheTest {
+    @Test
+    public void largeScaledIdentityIsCachedWithoutBeingAssembled() {
+        ResultCache cache = new ResultCache(1 << 20);
+        // dense, this would be 10^10 doubles
+        Matrix m = Matrix.scaledIdentity(100_000, new DoubleScalar(2));
+        cache.rememberInverse(m, m);
+        assertSame(m, cache.inverse(Matrix.scaledIdentity(100_000, new DoubleScalar(2))));
+        assertNull(cache.inverse(Matrix.scaledIdentity(100_000, new DoubleScalar(3))));
+        assertEquals(1, cache.hits());
+    }
+}